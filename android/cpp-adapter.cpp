@@ -0,0 +1,174 @@
+#include <jni.h>
+#include <jsi/jsi.h>
+
+#include <string>
+#include <vector>
+
+#include "react-native-mqtt-v3.h"
+
+using namespace facebook;
+
+static JavaVM *javaVm = nullptr;
+static jclass bridgeClass = nullptr;
+static jmethodID publishMethod = nullptr;
+
+static JNIEnv *getEnv() {
+  JNIEnv *env = nullptr;
+  if (javaVm->GetEnv(reinterpret_cast<void **>(&env), JNI_VERSION_1_6) != JNI_OK) {
+    javaVm->AttachCurrentThread(&env, nullptr);
+  }
+  return env;
+}
+
+// JNI's *StringUTF functions use modified UTF-8, which encodes NUL and supplementary characters
+// differently from the standard UTF-8 of JSI strings, so strings cross as UTF-16 instead.
+
+static jstring toJavaString(JNIEnv *env, const std::string &utf8) {
+  std::vector<jchar> utf16;
+  utf16.reserve(utf8.size());
+  size_t i = 0;
+  while (i < utf8.size()) {
+    uint8_t lead = static_cast<uint8_t>(utf8[i]);
+    uint32_t codePoint;
+    size_t extra;
+    if (lead < 0x80) {
+      codePoint = lead;
+      extra = 0;
+    } else if ((lead & 0xE0) == 0xC0) {
+      codePoint = lead & 0x1F;
+      extra = 1;
+    } else if ((lead & 0xF0) == 0xE0) {
+      codePoint = lead & 0x0F;
+      extra = 2;
+    } else if ((lead & 0xF8) == 0xF0) {
+      codePoint = lead & 0x07;
+      extra = 3;
+    } else {
+      utf16.push_back(0xFFFD);
+      i++;
+      continue;
+    }
+    size_t j = 1;
+    for (; j <= extra && i + j < utf8.size(); j++) {
+      uint8_t next = static_cast<uint8_t>(utf8[i + j]);
+      if ((next & 0xC0) != 0x80) {
+        break;
+      }
+      codePoint = (codePoint << 6) | (next & 0x3F);
+    }
+    if (j <= extra) {
+      // truncated sequence
+      utf16.push_back(0xFFFD);
+      i += j;
+      continue;
+    }
+    i += j;
+    if (codePoint >= 0x10000 && codePoint <= 0x10FFFF) {
+      codePoint -= 0x10000;
+      utf16.push_back(static_cast<jchar>(0xD800 + (codePoint >> 10)));
+      utf16.push_back(static_cast<jchar>(0xDC00 + (codePoint & 0x3FF)));
+    } else if (codePoint > 0x10FFFF || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+      utf16.push_back(0xFFFD);
+    } else {
+      utf16.push_back(static_cast<jchar>(codePoint));
+    }
+  }
+  return env->NewString(utf16.data(), static_cast<jsize>(utf16.size()));
+}
+
+static std::string toStdString(JNIEnv *env, jstring string) {
+  jsize length = env->GetStringLength(string);
+  std::vector<jchar> utf16(static_cast<size_t>(length));
+  env->GetStringRegion(string, 0, length, utf16.data());
+  std::string utf8;
+  utf8.reserve(utf16.size());
+  for (size_t i = 0; i < utf16.size(); i++) {
+    uint32_t codePoint = utf16[i];
+    if (codePoint >= 0xD800 && codePoint <= 0xDBFF && i + 1 < utf16.size() && utf16[i + 1] >= 0xDC00 &&
+        utf16[i + 1] <= 0xDFFF) {
+      codePoint = 0x10000 + ((codePoint - 0xD800) << 10) + (utf16[i + 1] - 0xDC00);
+      i++;
+    } else if (codePoint >= 0xD800 && codePoint <= 0xDFFF) {
+      // unpaired surrogate
+      codePoint = 0xFFFD;
+    }
+    if (codePoint < 0x80) {
+      utf8.push_back(static_cast<char>(codePoint));
+    } else if (codePoint < 0x800) {
+      utf8.push_back(static_cast<char>(0xC0 | (codePoint >> 6)));
+      utf8.push_back(static_cast<char>(0x80 | (codePoint & 0x3F)));
+    } else if (codePoint < 0x10000) {
+      utf8.push_back(static_cast<char>(0xE0 | (codePoint >> 12)));
+      utf8.push_back(static_cast<char>(0x80 | ((codePoint >> 6) & 0x3F)));
+      utf8.push_back(static_cast<char>(0x80 | (codePoint & 0x3F)));
+    } else {
+      utf8.push_back(static_cast<char>(0xF0 | (codePoint >> 18)));
+      utf8.push_back(static_cast<char>(0x80 | ((codePoint >> 12) & 0x3F)));
+      utf8.push_back(static_cast<char>(0x80 | ((codePoint >> 6) & 0x3F)));
+      utf8.push_back(static_cast<char>(0x80 | (codePoint & 0x3F)));
+    }
+  }
+  return utf8;
+}
+
+extern "C" JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *) {
+  javaVm = vm;
+  JNIEnv *env = nullptr;
+  if (vm->GetEnv(reinterpret_cast<void **>(&env), JNI_VERSION_1_6) != JNI_OK) {
+    return JNI_ERR;
+  }
+  jclass localClass = env->FindClass("com/mqttv3/BinaryBridge");
+  bridgeClass = reinterpret_cast<jclass>(env->NewGlobalRef(localClass));
+  env->DeleteLocalRef(localClass);
+  publishMethod = env->GetStaticMethodID(bridgeClass, "publish", "(ILjava/lang/String;Ljava/lang/String;[BIZ)V");
+  return JNI_VERSION_1_6;
+}
+
+extern "C" JNIEXPORT void JNICALL Java_com_mqttv3_BinaryBridge_nativeInstall(JNIEnv *, jclass, jlong runtimePtr) {
+  auto runtime = reinterpret_cast<jsi::Runtime *>(runtimePtr);
+  mqttv3::install(*runtime, [](int requestId, const std::string &clientId, const std::string &topic,
+                               const uint8_t *payload, size_t length, int qos, bool retained) {
+    JNIEnv *env = getEnv();
+    jstring jClientId = toJavaString(env, clientId);
+    jstring jTopic = toJavaString(env, topic);
+    jbyteArray jPayload = env->NewByteArray(static_cast<jsize>(length));
+    env->SetByteArrayRegion(jPayload, 0, static_cast<jsize>(length), reinterpret_cast<const jbyte *>(payload));
+    env->CallStaticVoidMethod(bridgeClass, publishMethod, requestId, jClientId, jTopic, jPayload, qos,
+                              static_cast<jboolean>(retained));
+    if (env->ExceptionCheck()) {
+      env->ExceptionDescribe();
+      env->ExceptionClear();
+    }
+    env->DeleteLocalRef(jPayload);
+    env->DeleteLocalRef(jTopic);
+    env->DeleteLocalRef(jClientId);
+  });
+}
+
+extern "C" JNIEXPORT void JNICALL Java_com_mqttv3_BinaryBridge_nativeDispatchMessage(JNIEnv *env, jclass,
+                                                                                      jlong runtimePtr,
+                                                                                      jstring clientId,
+                                                                                      jstring topic,
+                                                                                      jbyteArray payload) {
+  auto runtime = reinterpret_cast<jsi::Runtime *>(runtimePtr);
+  std::string clientIdString = toStdString(env, clientId);
+  std::string topicString = toStdString(env, topic);
+
+  jsize length = env->GetArrayLength(payload);
+  mqttv3::dispatchMessage(*runtime, clientIdString, topicString, static_cast<size_t>(length),
+                          [env, payload, length](uint8_t *destination) {
+                            env->GetByteArrayRegion(payload, 0, length, reinterpret_cast<jbyte *>(destination));
+                          });
+}
+
+extern "C" JNIEXPORT void JNICALL Java_com_mqttv3_BinaryBridge_nativeSettlePublish(JNIEnv *env, jclass,
+                                                                                    jlong runtimePtr,
+                                                                                    jint requestId, jstring error) {
+  auto runtime = reinterpret_cast<jsi::Runtime *>(runtimePtr);
+  if (error == nullptr) {
+    mqttv3::settlePublish(*runtime, requestId, nullptr);
+    return;
+  }
+  std::string errorString = toStdString(env, error);
+  mqttv3::settlePublish(*runtime, requestId, errorString.c_str());
+}
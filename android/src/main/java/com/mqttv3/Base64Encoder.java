@@ -0,0 +1,44 @@
+package com.mqttv3;
+
+/**
+ * Base64 (standard alphabet, padded, no line breaks) encoding into a reused char buffer, so an
+ * encoded payload costs the resulting String only. Not thread safe, each delivery worker owns one.
+ */
+public class Base64Encoder {
+  private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+  private char[] buffer = new char[1024];
+
+  public String encode(byte[] src) {
+    int length = (src.length + 2) / 3 * 4;
+    if (buffer.length < length) {
+      buffer = new char[Math.max(length, buffer.length * 2)];
+    }
+    char[] out = buffer;
+    int i = 0;
+    int o = 0;
+    int end = src.length - src.length % 3;
+    while (i < end) {
+      int bits = (src[i++] & 0xff) << 16 | (src[i++] & 0xff) << 8 | (src[i++] & 0xff);
+      out[o++] = ALPHABET[bits >>> 18];
+      out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+      out[o++] = ALPHABET[(bits >>> 6) & 0x3f];
+      out[o++] = ALPHABET[bits & 0x3f];
+    }
+    int remaining = src.length - end;
+    if (remaining == 1) {
+      int bits = (src[i] & 0xff) << 16;
+      out[o++] = ALPHABET[bits >>> 18];
+      out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+      out[o++] = '=';
+      out[o++] = '=';
+    } else if (remaining == 2) {
+      int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8;
+      out[o++] = ALPHABET[bits >>> 18];
+      out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+      out[o++] = ALPHABET[(bits >>> 6) & 0x3f];
+      out[o++] = '=';
+    }
+    return new String(out, 0, o);
+  }
+}
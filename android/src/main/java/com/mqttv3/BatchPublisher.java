@@ -0,0 +1,178 @@
+package com.mqttv3;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.eclipse.paho.android.service.MqttAndroidClient;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Publishes a list of messages back to back and resolves one promise with a result per message.
+ * At most the window of the {@link InflightController} is outstanding at once. A message refused
+ * because paho's in-flight window is full is retried as soon as one of ours completes, any other
+ * failure is recorded and the rest of the batch carries on.
+ */
+public class BatchPublisher {
+  public static class Request {
+    final String topic;
+    final MqttMessage message;
+
+    public Request(String topic, byte[] payload, int qos, boolean retained) {
+      this.topic = topic;
+      this.message = new MqttMessage(payload);
+      this.message.setQos(qos);
+      this.message.setRetained(retained);
+    }
+  }
+
+  private final MqttAndroidClient client;
+  private final ClientStats stats;
+  private final InflightController inflight;
+  private final List<Request> requests;
+  private final Promise promise;
+  private final String[] errors;
+  private final ArrayDeque<Integer> pending = new ArrayDeque<>();
+  private int outstanding;
+  private int completed;
+  private boolean paused;
+  private boolean pumping;
+  private boolean repump;
+  private final Runnable pumpTask = new Runnable() {
+    @Override
+    public void run() {
+      pump();
+    }
+  };
+
+  public BatchPublisher(MqttAndroidClient client, ClientStats stats, InflightController inflight, List<Request> requests, Promise promise) {
+    this.client = client;
+    this.stats = stats;
+    this.inflight = inflight;
+    this.requests = requests;
+    this.promise = promise;
+    this.errors = new String[requests.size()];
+    for (int i = 0; i < requests.size(); i++) {
+      pending.add(i);
+    }
+  }
+
+  public void start() {
+    if (requests.isEmpty()) {
+      promise.resolve(Arguments.createArray());
+      return;
+    }
+    pump();
+  }
+
+  private void pump() {
+    synchronized (this) {
+      if (pumping) {
+        // a slot freed up while the running pump is deciding to stop, it has to look again
+        repump = true;
+        return;
+      }
+      pumping = true;
+    }
+    while (true) {
+      synchronized (this) {
+        if (paused || pending.isEmpty()) {
+          pumping = false;
+          return;
+        }
+        repump = false;
+      }
+      if (!inflight.tryAcquire(pumpTask)) {
+        synchronized (this) {
+          if (!repump) {
+            pumping = false;
+            return;
+          }
+        }
+        continue;
+      }
+      int index;
+      synchronized (this) {
+        index = pending.poll();
+        outstanding++;
+      }
+      submit(index);
+    }
+  }
+
+  private void submit(int index) {
+    Request request = requests.get(index);
+    long startedAt = stats.publishStarted();
+    try {
+      client.publish(request.topic, request.message, null, new IMqttActionListener() {
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+          complete(index, startedAt, null);
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+          complete(index, startedAt, exception);
+        }
+      });
+    } catch (MqttException e) {
+      complete(index, startedAt, e);
+    }
+  }
+
+  private void complete(int index, long startedAt, Throwable exception) {
+    boolean maxInflight = exception instanceof MqttException
+      && ((MqttException) exception).getReasonCode() == MqttException.REASON_CODE_MAX_INFLIGHT;
+    if (maxInflight) {
+      inflight.rejected();
+    }
+    // a QoS 0 publish completes once written, its latency says nothing about the broker
+    boolean acknowledged = exception == null && requests.get(index).message.getQos() > 0;
+    inflight.release(acknowledged ? System.nanoTime() - startedAt : -1);
+    boolean finished;
+    synchronized (this) {
+      outstanding--;
+      if (maxInflight && outstanding > 0) {
+        // the window is full of our own messages, resend once one of them is acknowledged
+        pending.addFirst(index);
+        paused = true;
+        stats.publishRequeued();
+        return;
+      }
+      if (exception != null) {
+        errors[index] = exception.getMessage() == null ? "publish error" : exception.getMessage();
+        stats.publishFailed();
+      } else {
+        stats.publishCompleted(startedAt, requests.get(index).message.getPayload().length);
+      }
+      paused = false;
+      finished = ++completed == requests.size();
+    }
+    if (finished) {
+      promise.resolve(results());
+    } else {
+      pump();
+    }
+  }
+
+  private WritableArray results() {
+    WritableArray results = Arguments.createArray();
+    for (int i = 0; i < requests.size(); i++) {
+      WritableMap result = Arguments.createMap();
+      result.putString("topic", requests.get(i).topic);
+      result.putBoolean("ok", errors[i] == null);
+      if (errors[i] != null) {
+        result.putString("error", errors[i]);
+      }
+      results.pushMap(result);
+    }
+    return results;
+  }
+}
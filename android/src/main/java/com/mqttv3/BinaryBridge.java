@@ -0,0 +1,94 @@
+package com.mqttv3;
+
+import com.facebook.proguard.annotations.DoNotStrip;
+import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.PromiseImpl;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.ReadableMap;
+
+/**
+ * JSI binding that hands payloads to JS as ArrayBuffer and takes them back the same way, so binary
+ * clients skip the base64 round trip of the bridge. The native library is only built with the new
+ * architecture, see android/build.gradle.
+ */
+@DoNotStrip
+public class BinaryBridge {
+  private static final String LIBRARY_NAME = "react-native-mqtt-v3";
+  private static boolean loaded = false;
+  private static ReactContext reactContext;
+
+  public static synchronized boolean install(ReactContext context) {
+    if (!BuildConfig.IS_NEW_ARCHITECTURE_ENABLED) {
+      return false;
+    }
+    if (!loaded) {
+      try {
+        System.loadLibrary(LIBRARY_NAME);
+        loaded = true;
+      } catch (UnsatisfiedLinkError e) {
+        Tracer.DEFAULT.e("load " + LIBRARY_NAME + " error", e);
+        return false;
+      }
+    }
+    long runtime = context.getJavaScriptContextHolder().get();
+    if (runtime == 0) {
+      return false;
+    }
+    reactContext = context;
+    nativeInstall(runtime);
+    return true;
+  }
+
+  public static void dispatchMessage(ReactContext context, String clientId, String topic, byte[] payload) {
+    context.runOnJSQueueThread(new Runnable() {
+      @Override
+      public void run() {
+        long runtime = context.getJavaScriptContextHolder().get();
+        if (runtime != 0) {
+          nativeDispatchMessage(runtime, clientId, topic, payload);
+        }
+      }
+    });
+  }
+
+  @DoNotStrip
+  private static void publish(int requestId, String clientId, String topic, byte[] payload, int qos, boolean retained) {
+    MqttV3Client.publish(clientId, topic, payload, qos, retained, new PromiseImpl(new Callback() {
+      @Override
+      public void invoke(Object... args) {
+        settlePublish(requestId, null);
+      }
+    }, new Callback() {
+      @Override
+      public void invoke(Object... args) {
+        String error = "publish error";
+        if (args.length > 0 && args[0] instanceof ReadableMap && ((ReadableMap) args[0]).hasKey("message")) {
+          error = ((ReadableMap) args[0]).getString("message");
+        }
+        settlePublish(requestId, error);
+      }
+    }));
+  }
+
+  private static void settlePublish(int requestId, String error) {
+    ReactContext context = reactContext;
+    if (context == null) {
+      return;
+    }
+    context.runOnJSQueueThread(new Runnable() {
+      @Override
+      public void run() {
+        long runtime = context.getJavaScriptContextHolder().get();
+        if (runtime != 0) {
+          nativeSettlePublish(runtime, requestId, error);
+        }
+      }
+    });
+  }
+
+  private static native void nativeInstall(long runtime);
+
+  private static native void nativeDispatchMessage(long runtime, String clientId, String topic, byte[] payload);
+
+  private static native void nativeSettlePublish(long runtime, int requestId, String error);
+}
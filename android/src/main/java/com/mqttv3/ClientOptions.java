@@ -1,12 +1,36 @@
 package com.mqttv3;
 
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 public class ClientOptions {
+  public enum Persistence {
+    MEMORY("memory"), FILE("file"), JOURNAL("journal");
+
+    private final String value;
+
+    Persistence(String value) {
+      this.value = value;
+    }
+
+    public static Persistence fromString(@Nullable String value) {
+      for (Persistence persistence : values()) {
+        if (persistence.value.equalsIgnoreCase(value)) {
+          return persistence;
+        }
+      }
+      return MEMORY;
+    }
+  }
+
   private String clientId;
   private String host;
   private Integer port;
@@ -19,6 +43,44 @@ public class ClientOptions {
   private String ca;
   private boolean insecure;
   private boolean automaticReconnect = true;
+  private int reconnectPeriod = 1000;
+  private int maxReconnectDelay = 128000;
+  private int breakerFailures;
+  private long breakerCooldown = 60000;
+  private boolean binary;
+  private long batchWindow;
+  private int batchSize = 100;
+  private int inboundQueueSize = 1000;
+  private InboundQueue.Overflow inboundOverflow = InboundQueue.Overflow.DROP_OLDEST;
+  private int subscribeChunkSize = 100;
+  private Tracer.Level logLevel = Tracer.Level.WARN;
+  private int logSampleRate = 1;
+  private boolean tlsResumption;
+  private int tlsSessionCacheSize = 32;
+  private int tlsSessionTimeout = 86400;
+  private Persistence persistence = Persistence.MEMORY;
+  @Nullable
+  private OfflineBufferOptions offlineBuffer;
+  @Nullable
+  private PayloadCodec compression;
+  @Nullable
+  private DedupOptions dedup;
+  private int retainedCacheSize;
+  private final List<String> servers = new ArrayList<>();
+  private int probeTimeout;
+  private long probeCacheMs = 60000;
+  private boolean happyEyeballs;
+  @Nullable
+  private String path;
+  private Integer protocolVersion;
+  private boolean clean = true;
+  private Integer keepalive;
+  private Integer connectTimeout;
+  @Nullable
+  private WillOptions will;
+  private Integer maxInflight;
+  private boolean adaptiveInflight;
+  private int happyEyeballsDelay = 250;
 
   public static ClientOptions fromReadableMap(ReadableMap options) {
     ClientOptions parameters = new ClientOptions();
@@ -44,6 +106,9 @@ public class ClientOptions {
         parameters.protocol = ClientProtocol.WSS;
       }
     }
+    if (options.hasKey("path")) {
+      parameters.path = StringUtil.trimToNull(options.getString("path"));
+    }
     parameters.p12 = StringUtil.trimToNull(options.getString("p12"));
     parameters.pass = StringUtil.trimToNull(options.getString("pass"));
     parameters.ca = StringUtil.trimToNull(options.getString("ca"));
@@ -51,13 +116,286 @@ public class ClientOptions {
       parameters.insecure = options.getBoolean("insecure");
     }
     if (options.hasKey("automaticReconnect")) {
-      parameters.insecure = options.getBoolean("automaticReconnect");
+      parameters.automaticReconnect = options.getBoolean("automaticReconnect");
+    }
+    if (options.hasKey("reconnectPeriod") && options.getInt("reconnectPeriod") > 0) {
+      parameters.reconnectPeriod = options.getInt("reconnectPeriod");
+    }
+    if (options.hasKey("maxReconnectDelay") && options.getInt("maxReconnectDelay") > 0) {
+      parameters.maxReconnectDelay = options.getInt("maxReconnectDelay");
+    }
+    if (options.hasKey("circuitBreaker") && !options.isNull("circuitBreaker")) {
+      ReadableMap circuitBreaker = options.getMap("circuitBreaker");
+      if (circuitBreaker.hasKey("failures") && circuitBreaker.getInt("failures") > 0) {
+        parameters.breakerFailures = circuitBreaker.getInt("failures");
+      }
+      if (circuitBreaker.hasKey("cooldownMs") && circuitBreaker.getDouble("cooldownMs") > 0) {
+        parameters.breakerCooldown = (long) circuitBreaker.getDouble("cooldownMs");
+      }
+    }
+    if (options.hasKey("binary")) {
+      parameters.binary = options.getBoolean("binary");
+    }
+    if (options.hasKey("batchWindow")) {
+      parameters.batchWindow = options.getInt("batchWindow");
+    }
+    if (options.hasKey("batchSize") && options.getInt("batchSize") > 0) {
+      parameters.batchSize = options.getInt("batchSize");
+    }
+    if (options.hasKey("inboundQueueSize") && options.getInt("inboundQueueSize") > 0) {
+      parameters.inboundQueueSize = options.getInt("inboundQueueSize");
+    }
+    if (options.hasKey("inboundOverflow")) {
+      parameters.inboundOverflow = InboundQueue.Overflow.fromString(options.getString("inboundOverflow"));
+    }
+    if (options.hasKey("subscribeChunkSize") && options.getInt("subscribeChunkSize") > 0) {
+      parameters.subscribeChunkSize = options.getInt("subscribeChunkSize");
+    }
+    if (options.hasKey("logLevel")) {
+      parameters.logLevel = Tracer.Level.fromString(options.getString("logLevel"));
+    }
+    if (options.hasKey("logSampleRate") && options.getInt("logSampleRate") > 0) {
+      parameters.logSampleRate = options.getInt("logSampleRate");
+    }
+    if (options.hasKey("tlsResumption")) {
+      parameters.tlsResumption = options.getBoolean("tlsResumption");
+    }
+    if (options.hasKey("tlsSessionCacheSize") && options.getInt("tlsSessionCacheSize") > 0) {
+      parameters.tlsSessionCacheSize = options.getInt("tlsSessionCacheSize");
+    }
+    if (options.hasKey("tlsSessionTimeout") && options.getInt("tlsSessionTimeout") > 0) {
+      parameters.tlsSessionTimeout = options.getInt("tlsSessionTimeout");
+    }
+    if (options.hasKey("persistence")) {
+      parameters.persistence = Persistence.fromString(options.getString("persistence"));
+    }
+    if (options.hasKey("offlineBuffer") && !options.isNull("offlineBuffer")) {
+      parameters.offlineBuffer = OfflineBufferOptions.fromReadableMap(options.getMap("offlineBuffer"));
+    }
+    if (options.hasKey("compression") && !options.isNull("compression")) {
+      parameters.compression = PayloadCodec.fromReadableMap(options.getMap("compression"));
+    }
+    if (options.hasKey("dedup") && !options.isNull("dedup")) {
+      parameters.dedup = DedupOptions.fromReadableMap(options.getMap("dedup"));
+    }
+    if (options.hasKey("retainedCacheSize") && options.getInt("retainedCacheSize") > 0) {
+      parameters.retainedCacheSize = options.getInt("retainedCacheSize");
+    }
+    if (options.hasKey("servers") && !options.isNull("servers")) {
+      ReadableArray servers = options.getArray("servers");
+      for (int i = 0; i < servers.size(); i++) {
+        ReadableMap server = servers.getMap(i);
+        String host = server.hasKey("host") ? StringUtil.trimToNull(server.getString("host")) : null;
+        if (host != null) {
+          parameters.servers.add(parameters.urlOf(host, server.hasKey("port") && !server.isNull("port") ? server.getInt("port") : null));
+        }
+      }
+    }
+    if (options.hasKey("protocolVersion") && !options.isNull("protocolVersion")) {
+      parameters.protocolVersion = options.getInt("protocolVersion");
+    }
+    if (options.hasKey("clean")) {
+      parameters.clean = options.getBoolean("clean");
+    }
+    if (options.hasKey("keepalive") && !options.isNull("keepalive") && options.getInt("keepalive") >= 0) {
+      parameters.keepalive = options.getInt("keepalive");
+    }
+    if (options.hasKey("connectTimeout") && !options.isNull("connectTimeout") && options.getInt("connectTimeout") >= 0) {
+      parameters.connectTimeout = options.getInt("connectTimeout");
+    }
+    if (options.hasKey("will") && !options.isNull("will")) {
+      parameters.will = WillOptions.fromReadableMap(options.getMap("will"));
+    }
+    if (options.hasKey("maxInflight") && !options.isNull("maxInflight") && options.getInt("maxInflight") > 0) {
+      parameters.maxInflight = options.getInt("maxInflight");
+    }
+    if (options.hasKey("adaptiveInflight")) {
+      parameters.adaptiveInflight = options.getBoolean("adaptiveInflight");
+    }
+    if (options.hasKey("happyEyeballs")) {
+      parameters.happyEyeballs = options.getBoolean("happyEyeballs");
+    }
+    if (options.hasKey("happyEyeballsDelay") && options.getInt("happyEyeballsDelay") > 0) {
+      parameters.happyEyeballsDelay = options.getInt("happyEyeballsDelay");
+    }
+    if (options.hasKey("serverProbe") && !options.isNull("serverProbe")) {
+      ReadableMap serverProbe = options.getMap("serverProbe");
+      parameters.probeTimeout = 2000;
+      if (serverProbe.hasKey("timeoutMs") && serverProbe.getInt("timeoutMs") > 0) {
+        parameters.probeTimeout = serverProbe.getInt("timeoutMs");
+      }
+      if (serverProbe.hasKey("cacheMs") && serverProbe.getDouble("cacheMs") >= 0) {
+        parameters.probeCacheMs = (long) serverProbe.getDouble("cacheMs");
+      }
     }
     return parameters;
   }
 
+  public static class OfflineBufferOptions {
+    private int maxMessages = 5000;
+    private long maxBytes;
+    private boolean deleteOldest;
+    private boolean persist;
+
+    public static OfflineBufferOptions fromReadableMap(ReadableMap options) {
+      OfflineBufferOptions parameters = new OfflineBufferOptions();
+      if (options.hasKey("maxMessages") && options.getInt("maxMessages") > 0) {
+        parameters.maxMessages = options.getInt("maxMessages");
+      }
+      if (options.hasKey("maxBytes") && options.getDouble("maxBytes") > 0) {
+        parameters.maxBytes = (long) options.getDouble("maxBytes");
+      }
+      if (options.hasKey("deleteOldest")) {
+        parameters.deleteOldest = options.getBoolean("deleteOldest");
+      }
+      if (options.hasKey("persist")) {
+        parameters.persist = options.getBoolean("persist");
+      }
+      return parameters;
+    }
+
+    public int getMaxMessages() {
+      return maxMessages;
+    }
+
+    public long getMaxBytes() {
+      return maxBytes;
+    }
+
+    public boolean isDeleteOldest() {
+      return deleteOldest;
+    }
+
+    public boolean isPersist() {
+      return persist;
+    }
+  }
+
+  public static class DedupOptions {
+    private int capacity = 1024;
+    private long windowMs = 60_000;
+    @Nullable
+    private String keyPath;
+    private boolean dropRepeats;
+
+    /**
+     * @param options {@code {key?: 'payload' | json path, windowMs?, capacity?, dropRepeats?}}
+     */
+    public static DedupOptions fromReadableMap(ReadableMap options) {
+      DedupOptions parameters = new DedupOptions();
+      if (options.hasKey("capacity") && options.getInt("capacity") > 0) {
+        parameters.capacity = options.getInt("capacity");
+      }
+      if (options.hasKey("windowMs") && options.getDouble("windowMs") > 0) {
+        parameters.windowMs = (long) options.getDouble("windowMs");
+      }
+      String key = options.hasKey("key") ? options.getString("key") : null;
+      parameters.keyPath = key == null || "payload".equals(key) ? null : key;
+      if (options.hasKey("dropRepeats")) {
+        parameters.dropRepeats = options.getBoolean("dropRepeats");
+      }
+      return parameters;
+    }
+
+    public int getCapacity() {
+      return capacity;
+    }
+
+    public long getWindowMs() {
+      return windowMs;
+    }
+
+    /**
+     * @return dot separated path to the JSON field identifying a message, null for the whole payload
+     */
+    @Nullable
+    public String getKeyPath() {
+      return keyPath;
+    }
+
+    /**
+     * Also drop messages without the DUP flag repeating one seen within the window.
+     */
+    public boolean isDropRepeats() {
+      return dropRepeats;
+    }
+  }
+
+  public static class WillOptions {
+    private String topic;
+    private byte[] payload;
+    private int qos;
+    private boolean retain;
+
+    @Nullable
+    public static WillOptions fromReadableMap(ReadableMap options) {
+      String topic = options.hasKey("topic") ? StringUtil.trimToNull(options.getString("topic")) : null;
+      if (topic == null) {
+        return null;
+      }
+      WillOptions parameters = new WillOptions();
+      parameters.topic = topic;
+      String payload = options.hasKey("payload") ? options.getString("payload") : null;
+      parameters.payload = payload == null ? new byte[0] : payload.getBytes(StandardCharsets.UTF_8);
+      if (options.hasKey("qos") && !options.isNull("qos")) {
+        int qos = options.getInt("qos");
+        if (qos >= 0 && qos <= 2) {
+          parameters.qos = qos;
+        }
+      }
+      if (options.hasKey("retain")) {
+        parameters.retain = options.getBoolean("retain");
+      }
+      return parameters;
+    }
+
+    public String getTopic() {
+      return topic;
+    }
+
+    public byte[] getPayload() {
+      return payload;
+    }
+
+    public int getQos() {
+      return qos;
+    }
+
+    public boolean isRetain() {
+      return retain;
+    }
+  }
+
   public String getUrl() {
-    return (port != null && port > 0) ? protocol.name().toLowerCase() + "://" + host + ":" + port : protocol.name().toLowerCase() + "://" + host;
+    return urlOf(host, port);
+  }
+
+  private String urlOf(String host, @Nullable Integer port) {
+    String url = (port != null && port > 0) ? protocol.name().toLowerCase() + "://" + host + ":" + port : protocol.name().toLowerCase() + "://" + host;
+    if (path != null && (protocol == ClientProtocol.WS || protocol == ClientProtocol.WSS)) {
+      url += path.startsWith("/") ? path : "/" + path;
+    }
+    return url;
+  }
+
+  /**
+   * The URI of host and port followed by the URIs of servers, in the order paho tries them.
+   */
+  public String[] getServerUris() {
+    List<String> uris = new ArrayList<>(servers.size() + 1);
+    if (host != null) {
+      uris.add(getUrl());
+    }
+    for (String server : servers) {
+      if (!uris.contains(server)) {
+        uris.add(server);
+      }
+    }
+    return uris.toArray(new String[0]);
+  }
+
+  public boolean isSecure() {
+    return protocol == ClientProtocol.SSL || protocol == ClientProtocol.WSS;
   }
 
   private interface ProtocolSupport {
@@ -191,4 +529,265 @@ public class ClientOptions {
   public void setAutomaticReconnect(boolean automaticReconnect) {
     this.automaticReconnect = automaticReconnect;
   }
+
+  public int getReconnectPeriod() {
+    return reconnectPeriod;
+  }
+
+  public void setReconnectPeriod(int reconnectPeriod) {
+    this.reconnectPeriod = reconnectPeriod;
+  }
+
+  public int getMaxReconnectDelay() {
+    return maxReconnectDelay;
+  }
+
+  public void setMaxReconnectDelay(int maxReconnectDelay) {
+    this.maxReconnectDelay = maxReconnectDelay;
+  }
+
+  public int getBreakerFailures() {
+    return breakerFailures;
+  }
+
+  public void setBreakerFailures(int breakerFailures) {
+    this.breakerFailures = breakerFailures;
+  }
+
+  public long getBreakerCooldown() {
+    return breakerCooldown;
+  }
+
+  public void setBreakerCooldown(long breakerCooldown) {
+    this.breakerCooldown = breakerCooldown;
+  }
+
+  public boolean isBinary() {
+    return binary;
+  }
+
+  public void setBinary(boolean binary) {
+    this.binary = binary;
+  }
+
+  public long getBatchWindow() {
+    return batchWindow;
+  }
+
+  public void setBatchWindow(long batchWindow) {
+    this.batchWindow = batchWindow;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public int getInboundQueueSize() {
+    return inboundQueueSize;
+  }
+
+  public void setInboundQueueSize(int inboundQueueSize) {
+    this.inboundQueueSize = inboundQueueSize;
+  }
+
+  public InboundQueue.Overflow getInboundOverflow() {
+    return inboundOverflow;
+  }
+
+  public void setInboundOverflow(InboundQueue.Overflow inboundOverflow) {
+    this.inboundOverflow = inboundOverflow;
+  }
+
+  public int getSubscribeChunkSize() {
+    return subscribeChunkSize;
+  }
+
+  public void setSubscribeChunkSize(int subscribeChunkSize) {
+    this.subscribeChunkSize = subscribeChunkSize;
+  }
+
+  public Tracer.Level getLogLevel() {
+    return logLevel;
+  }
+
+  public void setLogLevel(Tracer.Level logLevel) {
+    this.logLevel = logLevel;
+  }
+
+  public int getLogSampleRate() {
+    return logSampleRate;
+  }
+
+  public void setLogSampleRate(int logSampleRate) {
+    this.logSampleRate = logSampleRate;
+  }
+
+  public boolean isTlsResumption() {
+    return tlsResumption;
+  }
+
+  public void setTlsResumption(boolean tlsResumption) {
+    this.tlsResumption = tlsResumption;
+  }
+
+  public int getTlsSessionCacheSize() {
+    return tlsSessionCacheSize;
+  }
+
+  public void setTlsSessionCacheSize(int tlsSessionCacheSize) {
+    this.tlsSessionCacheSize = tlsSessionCacheSize;
+  }
+
+  public int getTlsSessionTimeout() {
+    return tlsSessionTimeout;
+  }
+
+  public void setTlsSessionTimeout(int tlsSessionTimeout) {
+    this.tlsSessionTimeout = tlsSessionTimeout;
+  }
+
+  public Persistence getPersistence() {
+    return persistence;
+  }
+
+  public void setPersistence(Persistence persistence) {
+    this.persistence = persistence;
+  }
+
+  @Nullable
+  public OfflineBufferOptions getOfflineBuffer() {
+    return offlineBuffer;
+  }
+
+  public void setOfflineBuffer(@Nullable OfflineBufferOptions offlineBuffer) {
+    this.offlineBuffer = offlineBuffer;
+  }
+
+  @Nullable
+  public PayloadCodec getCompression() {
+    return compression;
+  }
+
+  public void setCompression(@Nullable PayloadCodec compression) {
+    this.compression = compression;
+  }
+
+  @Nullable
+  public DedupOptions getDedup() {
+    return dedup;
+  }
+
+  public void setDedup(@Nullable DedupOptions dedup) {
+    this.dedup = dedup;
+  }
+
+  public int getRetainedCacheSize() {
+    return retainedCacheSize;
+  }
+
+  public void setRetainedCacheSize(int retainedCacheSize) {
+    this.retainedCacheSize = retainedCacheSize;
+  }
+
+  public int getProbeTimeout() {
+    return probeTimeout;
+  }
+
+  public void setProbeTimeout(int probeTimeout) {
+    this.probeTimeout = probeTimeout;
+  }
+
+  public long getProbeCacheMs() {
+    return probeCacheMs;
+  }
+
+  public void setProbeCacheMs(long probeCacheMs) {
+    this.probeCacheMs = probeCacheMs;
+  }
+
+  public boolean isHappyEyeballs() {
+    return happyEyeballs;
+  }
+
+  public void setHappyEyeballs(boolean happyEyeballs) {
+    this.happyEyeballs = happyEyeballs;
+  }
+
+  public int getHappyEyeballsDelay() {
+    return happyEyeballsDelay;
+  }
+
+  public void setHappyEyeballsDelay(int happyEyeballsDelay) {
+    this.happyEyeballsDelay = happyEyeballsDelay;
+  }
+
+  @Nullable
+  public String getPath() {
+    return path;
+  }
+
+  public void setPath(@Nullable String path) {
+    this.path = path;
+  }
+
+  public Integer getProtocolVersion() {
+    return protocolVersion;
+  }
+
+  public void setProtocolVersion(Integer protocolVersion) {
+    this.protocolVersion = protocolVersion;
+  }
+
+  public boolean isClean() {
+    return clean;
+  }
+
+  public void setClean(boolean clean) {
+    this.clean = clean;
+  }
+
+  public Integer getKeepalive() {
+    return keepalive;
+  }
+
+  public void setKeepalive(Integer keepalive) {
+    this.keepalive = keepalive;
+  }
+
+  public Integer getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public void setConnectTimeout(Integer connectTimeout) {
+    this.connectTimeout = connectTimeout;
+  }
+
+  @Nullable
+  public WillOptions getWill() {
+    return will;
+  }
+
+  public void setWill(@Nullable WillOptions will) {
+    this.will = will;
+  }
+
+  public Integer getMaxInflight() {
+    return maxInflight;
+  }
+
+  public void setMaxInflight(Integer maxInflight) {
+    this.maxInflight = maxInflight;
+  }
+
+  public boolean isAdaptiveInflight() {
+    return adaptiveInflight;
+  }
+
+  public void setAdaptiveInflight(boolean adaptiveInflight) {
+    this.adaptiveInflight = adaptiveInflight;
+  }
 }
@@ -0,0 +1,43 @@
+package com.mqttv3;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The clients created from JS, keyed by clientId. Lookups do not lock so bridge calls and paho
+ * callbacks of different clients never wait on each other; closed sessions are never returned.
+ */
+public class ClientRegistry {
+  private final ConcurrentHashMap<String, ClientSession> sessions = new ConcurrentHashMap<>();
+
+  @Nullable
+  public ClientSession get(String clientId) {
+    ClientSession session = sessions.get(clientId);
+    return session == null || session.getState() == ClientSession.State.CLOSED ? null : session;
+  }
+
+  /**
+   * @return the session already registered under the clientId, or null when {@code session} was added
+   */
+  @Nullable
+  public ClientSession putIfAbsent(String clientId, ClientSession session) {
+    while (true) {
+      ClientSession existing = sessions.putIfAbsent(clientId, session);
+      if (existing == null) {
+        return null;
+      }
+      if (existing.getState() != ClientSession.State.CLOSED) {
+        return existing;
+      }
+      // closed but not yet removed, take its place
+      if (sessions.replace(clientId, existing, session)) {
+        return null;
+      }
+    }
+  }
+
+  public void remove(String clientId, ClientSession session) {
+    sessions.remove(clientId, session);
+  }
+}
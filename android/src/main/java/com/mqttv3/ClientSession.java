@@ -0,0 +1,277 @@
+package com.mqttv3;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import org.eclipse.paho.android.service.MqttAndroidClient;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Everything the module keeps for one client: the paho client, the options it was created with
+ * and the per-client delivery state.
+ */
+public class ClientSession {
+  public enum State {
+    CREATED, CONNECTING, CONNECTED, DISCONNECTING, CLOSED
+  }
+
+  private final ReactApplicationContext reactContext;
+  private final MqttAndroidClient client;
+  private final ClientOptions options;
+  @Nullable
+  private final MessageBatcher batcher;
+  private final MessageRouter router = new MessageRouter();
+  private final TopicTrie<String> jsonFilters = new TopicTrie<>();
+  private final Tracer tracer;
+  private final ClientStats stats = new ClientStats();
+  @Nullable
+  private final OfflineBuffer offlineBuffer;
+  @Nullable
+  private final RetainedCache retainedCache;
+  @Nullable
+  private final Deduplicator dedup;
+  private final RpcClient rpcClient;
+  private final InflightController inflightController;
+  private final ReconnectScheduler reconnectScheduler;
+  private InboundQueue inboundQueue;
+  private Conflater conflater;
+  private final AtomicReference<State> state = new AtomicReference<>(State.CREATED);
+  private final AtomicInteger connectGeneration = new AtomicInteger();
+  private volatile boolean connectedOnce;
+  @Nullable
+  private volatile DeviceEventManagerModule.RCTDeviceEventEmitter emitter;
+
+  public ClientSession(ReactApplicationContext reactContext, MqttAndroidClient client, ClientOptions options) {
+    this.reactContext = reactContext;
+    this.client = client;
+    this.options = options;
+    this.batcher = options.getBatchWindow() > 0
+      ? new MessageBatcher(this, MqttV3Client.MESSAGES_PREFIX + options.getClientId(), options.getBatchWindow(), options.getBatchSize(), stats)
+      : null;
+    this.tracer = new Tracer(options.getLogLevel(), options.getLogSampleRate());
+    this.offlineBuffer = options.getOfflineBuffer() == null ? null : new OfflineBuffer(this, options.getClientId(), options.getOfflineBuffer());
+    final String reconnectEvent = MqttV3Client.RECONNECT_PREFIX + options.getClientId();
+    this.reconnectScheduler = new ReconnectScheduler(client, new ReconnectScheduler.Listener() {
+      @Override
+      public void onStateChange(String state, int attempt, long delayMs, @Nullable String error) {
+        if (ReconnectScheduler.CONNECTED.equals(state)) {
+          stats.reconnected();
+        }
+        if (tracer.isInfoEnabled()) {
+          tracer.i("reconnect " + state + " attempt:" + attempt + " delay:" + delayMs);
+        }
+        WritableMap event = Arguments.createMap();
+        event.putString("state", state);
+        event.putInt("attempt", attempt);
+        event.putDouble("delayMs", delayMs);
+        if (error != null) {
+          event.putString("error", error);
+        }
+        emit(reconnectEvent, event);
+      }
+    });
+    // paho's default window is 10 messages
+    this.inflightController = new InflightController(options.getMaxInflight() == null ? 10 : options.getMaxInflight(), options.isAdaptiveInflight());
+    this.rpcClient = new RpcClient(client, tracer, options.getQos() == null ? 1 : options.getQos(), options.getCompression());
+    this.retainedCache = options.getRetainedCacheSize() > 0 ? new RetainedCache(options.getRetainedCacheSize()) : null;
+    this.dedup = options.getDedup() == null ? null : new Deduplicator(options.getDedup());
+  }
+
+  public ReactApplicationContext getReactContext() {
+    return reactContext;
+  }
+
+  /**
+   * Emits an event to JS, the emitter module is looked up once per client instead of per event.
+   */
+  public void emit(String eventName, @Nullable Object params) {
+    DeviceEventManagerModule.RCTDeviceEventEmitter current = emitter;
+    if (current == null) {
+      current = reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class);
+      emitter = current;
+    }
+    current.emit(eventName, params);
+  }
+
+  public MqttAndroidClient getClient() {
+    return client;
+  }
+
+  public ClientOptions getOptions() {
+    return options;
+  }
+
+  @Nullable
+  public MessageBatcher getBatcher() {
+    return batcher;
+  }
+
+  public MessageRouter getRouter() {
+    return router;
+  }
+
+  /**
+   * Records how messages of a subscription are delivered, {@link SubscriptionOptions#DEFAULT} once
+   * it is gone.
+   */
+  public void setSubscriptionOptions(String filter, SubscriptionOptions subscriptionOptions) {
+    if (subscriptionOptions.isJson()) {
+      jsonFilters.add(filter, filter);
+    } else {
+      jsonFilters.remove(filter, filter);
+    }
+    if (subscriptionOptions.getConflateMs() > 0) {
+      conflater.add(filter, subscriptionOptions.getConflateMs());
+    } else {
+      conflater.remove(filter);
+    }
+  }
+
+  /**
+   * Whether a subscription with the json payload format matches the topic.
+   *
+   * @param scratch emptied and used for the matching filters
+   */
+  public boolean isJsonPayload(String topic, Collection<String> scratch) {
+    if (jsonFilters.isEmpty()) {
+      return false;
+    }
+    scratch.clear();
+    jsonFilters.match(topic, scratch);
+    return !scratch.isEmpty();
+  }
+
+  public Tracer getTracer() {
+    return tracer;
+  }
+
+  public ClientStats getStats() {
+    return stats;
+  }
+
+  @Nullable
+  public OfflineBuffer getOfflineBuffer() {
+    return offlineBuffer;
+  }
+
+  public ReconnectScheduler getReconnectScheduler() {
+    return reconnectScheduler;
+  }
+
+  public InflightController getInflightController() {
+    return inflightController;
+  }
+
+  public RpcClient getRpcClient() {
+    return rpcClient;
+  }
+
+  @Nullable
+  public Deduplicator getDedup() {
+    return dedup;
+  }
+
+  @Nullable
+  public RetainedCache getRetainedCache() {
+    return retainedCache;
+  }
+
+  public InboundQueue getInboundQueue() {
+    return inboundQueue;
+  }
+
+  public void setInboundQueue(InboundQueue inboundQueue) {
+    this.inboundQueue = inboundQueue;
+    this.conflater = new Conflater(inboundQueue);
+  }
+
+  public Conflater getConflater() {
+    return conflater;
+  }
+
+  public State getState() {
+    return state.get();
+  }
+
+  public boolean transition(State from, State to) {
+    return state.compareAndSet(from, to);
+  }
+
+  /**
+   * Starts a connect attempt after moving to CONNECTING, attempts started before it are stale.
+   *
+   * @return the generation of the attempt
+   */
+  public int newConnectAttempt() {
+    return connectGeneration.incrementAndGet();
+  }
+
+  /**
+   * Whether the attempt is the latest one and the session is still connecting, work finishing
+   * after a disconnect or a newer connect must not act on the session.
+   */
+  public boolean isConnectAttempt(int generation) {
+    return state.get() == State.CONNECTING && connectGeneration.get() == generation;
+  }
+
+  /**
+   * @return the state before closing
+   */
+  public State markClosed() {
+    return state.getAndSet(State.CLOSED);
+  }
+
+  /**
+   * Whether the connection was ever established, only then the service knows this client and can
+   * take publishes and subscriptions, possibly buffering them while offline.
+   */
+  public boolean hasConnected() {
+    return connectedOnce;
+  }
+
+  /**
+   * Called by both the connect token and connectComplete, only the first of them for a connection
+   * moves the session to CONNECTED and does the work.
+   */
+  public void connected() {
+    State current = state.get();
+    while (current == State.CREATED || current == State.CONNECTING) {
+      if (state.compareAndSet(current, State.CONNECTED)) {
+        connectedOnce = true;
+        rpcClient.connectionReset();
+        reconnectScheduler.connected();
+        if (offlineBuffer != null) {
+          offlineBuffer.apply(client);
+          offlineBuffer.startDrain(client);
+        }
+        return;
+      }
+      current = state.get();
+    }
+  }
+
+  public void close() {
+    reconnectScheduler.stop();
+    rpcClient.close();
+    if (offlineBuffer != null) {
+      offlineBuffer.stopDrain();
+    }
+    if (conflater != null) {
+      conflater.close();
+    }
+    if (inboundQueue != null) {
+      inboundQueue.close();
+    }
+    if (batcher != null) {
+      batcher.close();
+    }
+    client.close();
+  }
+}
@@ -0,0 +1,79 @@
+package com.mqttv3;
+
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runtime counters of one client, updated from paho callbacks, the delivery worker and the bridge
+ * without locking.
+ */
+public class ClientStats {
+  private final AtomicLong messagesIn = new AtomicLong();
+  private final AtomicLong bytesIn = new AtomicLong();
+  private final AtomicLong messagesOut = new AtomicLong();
+  private final AtomicLong bytesOut = new AtomicLong();
+  private final AtomicLong publishesPending = new AtomicLong();
+  private final AtomicLong publishesCompleted = new AtomicLong();
+  private final AtomicLong publishesFailed = new AtomicLong();
+  private final AtomicLong reconnects = new AtomicLong();
+  private final LatencyHistogram publishLatency = new LatencyHistogram();
+  private final LatencyHistogram deliveryLatency = new LatencyHistogram();
+
+  public void messageArrived(int bytes) {
+    messagesIn.incrementAndGet();
+    bytesIn.addAndGet(bytes);
+  }
+
+  /**
+   * @return the start time to pass to {@link #publishCompleted}
+   */
+  public long publishStarted() {
+    publishesPending.incrementAndGet();
+    return System.nanoTime();
+  }
+
+  public void publishCompleted(long startedAt, int bytes) {
+    publishesPending.decrementAndGet();
+    publishesCompleted.incrementAndGet();
+    messagesOut.incrementAndGet();
+    bytesOut.addAndGet(bytes);
+    publishLatency.record(System.nanoTime() - startedAt);
+  }
+
+  public void publishFailed() {
+    publishesPending.decrementAndGet();
+    publishesFailed.incrementAndGet();
+  }
+
+  /**
+   * A publish refused by a full in-flight window that will be submitted again.
+   */
+  public void publishRequeued() {
+    publishesPending.decrementAndGet();
+  }
+
+  public void reconnected() {
+    reconnects.incrementAndGet();
+  }
+
+  /**
+   * @param arrivedAt {@link System#nanoTime()} when paho handed the message over
+   */
+  public void messageEmitted(long arrivedAt) {
+    deliveryLatency.record(System.nanoTime() - arrivedAt);
+  }
+
+  public void writeTo(WritableMap map) {
+    map.putDouble("messagesIn", messagesIn.get());
+    map.putDouble("bytesIn", bytesIn.get());
+    map.putDouble("messagesOut", messagesOut.get());
+    map.putDouble("bytesOut", bytesOut.get());
+    map.putDouble("publishesPending", publishesPending.get());
+    map.putDouble("publishesCompleted", publishesCompleted.get());
+    map.putDouble("publishesFailed", publishesFailed.get());
+    map.putDouble("reconnects", reconnects.get());
+    map.putMap("publishLatency", publishLatency.toWritableMap());
+    map.putMap("deliveryLatency", deliveryLatency.toWritableMap());
+  }
+}
@@ -0,0 +1,139 @@
+package com.mqttv3;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latest-value delivery for subscriptions with a conflation interval. The first message of a topic
+ * passes straight through, messages arriving within the interval after it overwrite one slot per
+ * topic, and the slot is handed to the inbound queue when the interval elapses. A topic that stays
+ * quiet for a whole interval loses its slot.
+ */
+public class Conflater {
+  private static class Slot {
+    final long intervalMs;
+    InboundMessage pending;
+    ScheduledFuture<?> scheduledFlush;
+
+    Slot(long intervalMs) {
+      this.intervalMs = intervalMs;
+    }
+  }
+
+  private final InboundQueue queue;
+  private final TopicTrie<String> filters = new TopicTrie<>();
+  private final Map<String, Long> intervals = new HashMap<>();
+  private final Map<String, Slot> slots = new HashMap<>();
+  private final ArrayList<String> matched = new ArrayList<>();
+  private long conflated;
+  private boolean closed;
+
+  public Conflater(InboundQueue queue) {
+    this.queue = queue;
+  }
+
+  public synchronized void add(String filter, long intervalMs) {
+    filters.add(filter, filter);
+    intervals.put(filter, intervalMs);
+  }
+
+  public synchronized void remove(String filter) {
+    filters.remove(filter, filter);
+    intervals.remove(filter);
+  }
+
+  /**
+   * @return whether the message was taken, otherwise it is queued as usual
+   */
+  public boolean offer(InboundMessage message) {
+    if (filters.isEmpty()) {
+      return false;
+    }
+    synchronized (this) {
+      if (closed) {
+        return false;
+      }
+      String topic = message.getTopic();
+      Slot slot = slots.get(topic);
+      if (slot != null) {
+        if (slot.pending != null) {
+          conflated++;
+        }
+        slot.pending = message;
+        return true;
+      }
+      long intervalMs = intervalOf(topic);
+      if (intervalMs <= 0) {
+        return false;
+      }
+      slot = new Slot(intervalMs);
+      slots.put(topic, slot);
+      schedule(topic, slot);
+      return false;
+    }
+  }
+
+  /**
+   * The shortest interval of the filters matching the topic, the subscription wanting the most
+   * updates decides.
+   */
+  private long intervalOf(String topic) {
+    matched.clear();
+    filters.match(topic, matched);
+    long intervalMs = 0;
+    for (String filter : matched) {
+      Long value = intervals.get(filter);
+      if (value != null && (intervalMs == 0 || value < intervalMs)) {
+        intervalMs = value;
+      }
+    }
+    return intervalMs;
+  }
+
+  private void schedule(final String topic, final Slot slot) {
+    slot.scheduledFlush = Schedulers.shared().schedule(new Runnable() {
+      @Override
+      public void run() {
+        flush(topic, slot);
+      }
+    }, slot.intervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized void flush(String topic, Slot slot) {
+    if (closed || slots.get(topic) != slot) {
+      return;
+    }
+    if (slot.pending == null) {
+      slots.remove(topic);
+      return;
+    }
+    // never block the shared scheduler, a full queue is retried with whatever is latest by then
+    if (queue.tryOffer(slot.pending)) {
+      slot.pending = null;
+    }
+    schedule(topic, slot);
+  }
+
+  /**
+   * Messages overwritten by a newer one of the same topic before they were emitted.
+   */
+  public synchronized long getConflated() {
+    return conflated;
+  }
+
+  public synchronized void close() {
+    closed = true;
+    Iterator<Slot> iterator = slots.values().iterator();
+    while (iterator.hasNext()) {
+      ScheduledFuture<?> scheduledFlush = iterator.next().scheduledFlush;
+      if (scheduledFlush != null) {
+        scheduledFlush.cancel(false);
+      }
+      iterator.remove();
+    }
+  }
+}
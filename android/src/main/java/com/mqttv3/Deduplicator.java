@@ -0,0 +1,121 @@
+package com.mqttv3;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drops QoS 1 and 2 messages the broker delivers again with the DUP flag, typically after a
+ * reconnect. A message is identified by a 64-bit hash of the topic and either the payload or a
+ * JSON field of it, and remembered in a fixed-size LRU for a time window. Every message is
+ * remembered, but only a redelivery is dropped, a publisher sending the same value twice is not
+ * a duplicate. With {@code dropRepeats} repeats without the flag are dropped as well, which is
+ * only safe when the key is unique per message.
+ */
+public class Deduplicator {
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final int capacity;
+  private final long windowNanos;
+  @Nullable
+  private final String[] path;
+  private final boolean dropRepeats;
+  private final LinkedHashMap<Long, Long> seen;
+  private final AtomicLong checked = new AtomicLong();
+  private final AtomicLong suppressed = new AtomicLong();
+
+  public Deduplicator(int capacity, long windowMs, @Nullable String keyPath, boolean dropRepeats) {
+    this.capacity = capacity;
+    this.windowNanos = windowMs * 1_000_000L;
+    this.path = keyPath == null ? null : keyPath.split("\\.");
+    this.dropRepeats = dropRepeats;
+    this.seen = new LinkedHashMap<Long, Long>(capacity * 4 / 3 + 1, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+        return size() > Deduplicator.this.capacity;
+      }
+    };
+  }
+
+  public Deduplicator(ClientOptions.DedupOptions options) {
+    this(options.getCapacity(), options.getWindowMs(), options.getKeyPath(), options.isDropRepeats());
+  }
+
+  /**
+   * @param redelivered the DUP flag of the message
+   */
+  public boolean isDuplicate(String topic, byte[] payload, boolean redelivered) {
+    long hash = hash(FNV_OFFSET, topic);
+    if (path == null) {
+      hash = hash(hash, payload);
+    } else {
+      String id = idOf(payload);
+      if (id == null) {
+        // no id to compare, never suppressed
+        return false;
+      }
+      hash = hash(hash, id);
+    }
+    checked.incrementAndGet();
+    long now = System.nanoTime();
+    synchronized (seen) {
+      Long seenAt = seen.put(hash, now);
+      if (seenAt != null && now - seenAt <= windowNanos && (redelivered || dropRepeats)) {
+        suppressed.incrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  @Nullable
+  private String idOf(byte[] payload) {
+    try {
+      Object value = new JSONObject(new String(payload, StandardCharsets.UTF_8));
+      for (String field : path) {
+        if (!(value instanceof JSONObject)) {
+          return null;
+        }
+        value = ((JSONObject) value).opt(field);
+      }
+      return value == null || value == JSONObject.NULL ? null : value.toString();
+    } catch (JSONException e) {
+      return null;
+    }
+  }
+
+  // over the chars, encoding the topic first would allocate for every message
+  private static long hash(long hash, String text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      hash ^= c & 0xff;
+      hash *= FNV_PRIME;
+      hash ^= c >>> 8;
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private static long hash(long hash, byte[] bytes) {
+    for (byte b : bytes) {
+      hash ^= b & 0xff;
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  public long getChecked() {
+    return checked.get();
+  }
+
+  public long getSuppressed() {
+    return suppressed.get();
+  }
+}
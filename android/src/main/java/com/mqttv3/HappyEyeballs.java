@@ -0,0 +1,511 @@
+package com.mqttv3;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Connects to every resolved address of the broker in parallel, staggered by a short delay and
+ * alternating IPv6 and IPv4, and keeps the first socket that connects, see RFC 8305. A broken
+ * address family then costs the delay instead of a whole connect timeout.
+ * <p>
+ * Paho creates an unconnected socket and connects it to the broker, so the factories hand out a
+ * {@link RacingSocket} that races on connect and delegates to the winner. With TLS the handshake
+ * runs on the winning connection only.
+ */
+public class HappyEyeballs {
+  private static final ExecutorService connectPool = Executors.newCachedThreadPool(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "MqttV3-connect");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  /**
+   * For tcp:// and ws://, paho refuses an {@link SSLSocketFactory} there.
+   */
+  public static SocketFactory socketFactory(final int attemptDelayMs) {
+    return new SocketFactory() {
+      @Override
+      public Socket createSocket() {
+        return new RacingSocket(null, attemptDelayMs);
+      }
+
+      @Override
+      public Socket createSocket(String host, int port) throws IOException {
+        Socket socket = createSocket();
+        socket.connect(new InetSocketAddress(host, port));
+        return socket;
+      }
+
+      @Override
+      public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return new Socket(host, port, localHost, localPort);
+      }
+
+      @Override
+      public Socket createSocket(InetAddress host, int port) throws IOException {
+        return new Socket(host, port);
+      }
+
+      @Override
+      public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return new Socket(address, port, localAddress, localPort);
+      }
+    };
+  }
+
+  /**
+   * For ssl:// and wss://, {@code tls} layers TLS on the winning connection.
+   */
+  public static SSLSocketFactory sslSocketFactory(final SSLSocketFactory tls, final int attemptDelayMs) {
+    return new SSLSocketFactory() {
+      @Override
+      public String[] getDefaultCipherSuites() {
+        return tls.getDefaultCipherSuites();
+      }
+
+      @Override
+      public String[] getSupportedCipherSuites() {
+        return tls.getSupportedCipherSuites();
+      }
+
+      @Override
+      public Socket createSocket() {
+        return new RacingSocket(tls, attemptDelayMs);
+      }
+
+      @Override
+      public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+        return tls.createSocket(s, host, port, autoClose);
+      }
+
+      @Override
+      public Socket createSocket(String host, int port) throws IOException {
+        Socket socket = createSocket();
+        socket.connect(new InetSocketAddress(host, port));
+        return socket;
+      }
+
+      @Override
+      public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return tls.createSocket(host, port, localHost, localPort);
+      }
+
+      @Override
+      public Socket createSocket(InetAddress host, int port) throws IOException {
+        return tls.createSocket(host, port);
+      }
+
+      @Override
+      public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return tls.createSocket(address, port, localAddress, localPort);
+      }
+    };
+  }
+
+  /**
+   * Resolved addresses alternating between families, starting with the family the resolver
+   * preferred.
+   */
+  private static List<InetAddress> interleave(InetAddress[] addresses) {
+    List<InetAddress> preferred = new ArrayList<>();
+    List<InetAddress> other = new ArrayList<>();
+    boolean preferV6 = addresses[0] instanceof Inet6Address;
+    for (InetAddress address : addresses) {
+      if ((address instanceof Inet6Address) == preferV6) {
+        preferred.add(address);
+      } else {
+        other.add(address);
+      }
+    }
+    List<InetAddress> ordered = new ArrayList<>(addresses.length);
+    for (int i = 0; i < Math.max(preferred.size(), other.size()); i++) {
+      if (i < preferred.size()) {
+        ordered.add(preferred.get(i));
+      }
+      if (i < other.size()) {
+        ordered.add(other.get(i));
+      }
+    }
+    return ordered;
+  }
+
+  /**
+   * One connect: the attempts, their outcomes and the cleanup of the losers.
+   */
+  private static class Race {
+    private final LinkedBlockingQueue<Object> outcomes = new LinkedBlockingQueue<>();
+    private final List<Socket> attempts = new ArrayList<>();
+    private boolean finished;
+
+    Socket run(List<InetAddress> addresses, final int port, int timeoutMs, int attemptDelayMs) throws IOException {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs > 0 ? timeoutMs : Integer.MAX_VALUE);
+      int started = 0;
+      int failed = 0;
+      IOException lastError = null;
+      Socket winner = null;
+      try {
+        start(addresses.get(started++), port, timeoutMs);
+        while (winner == null) {
+          long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+          if (remaining <= 0) {
+            throw new SocketTimeoutException("connect timed out");
+          }
+          Object outcome = outcomes.poll(started < addresses.size() ? Math.min(attemptDelayMs, remaining) : remaining, TimeUnit.MILLISECONDS);
+          if (outcome instanceof Socket) {
+            winner = (Socket) outcome;
+          } else if (outcome != null) {
+            lastError = (IOException) outcome;
+            if (++failed == addresses.size()) {
+              throw lastError;
+            }
+          }
+          // the next address starts once the delay passed or the previous attempt failed
+          if (winner == null && started < addresses.size() && (outcome == null || failed == started)) {
+            start(addresses.get(started++), port, timeoutMs);
+          }
+        }
+        return winner;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SocketException("connect interrupted");
+      } finally {
+        finish(winner);
+      }
+    }
+
+    private void start(final InetAddress address, final int port, final int timeoutMs) {
+      connectPool.execute(new Runnable() {
+        @Override
+        public void run() {
+          Socket socket = new Socket();
+          synchronized (Race.this) {
+            if (finished) {
+              return;
+            }
+            attempts.add(socket);
+          }
+          try {
+            socket.connect(new InetSocketAddress(address, port), timeoutMs);
+            outcomes.offer(socket);
+          } catch (IOException e) {
+            outcomes.offer(e);
+          }
+          synchronized (Race.this) {
+            if (finished) {
+              // the race is over, a late winner is closed here
+              closeQuietly(socket);
+            }
+          }
+        }
+      });
+    }
+
+    private synchronized void finish(@Nullable Socket winner) {
+      finished = true;
+      for (Socket socket : attempts) {
+        if (socket != winner) {
+          closeQuietly(socket);
+        }
+      }
+      attempts.clear();
+    }
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException ignored) {
+      // cancelling an attempt
+    }
+  }
+
+  /**
+   * An unconnected socket that races the addresses of the endpoint on connect and then forwards to
+   * the winning connection. It is an {@link SSLSocket} because paho casts to it on ssl://, the TLS
+   * methods are only used there and throw on a plain connection.
+   */
+  private static class RacingSocket extends SSLSocket {
+    @Nullable
+    private final SSLSocketFactory tls;
+    private final int attemptDelayMs;
+    private Socket delegate;
+    private int soTimeout;
+    private boolean closed;
+
+    RacingSocket(@Nullable SSLSocketFactory tls, int attemptDelayMs) {
+      this.tls = tls;
+      this.attemptDelayMs = attemptDelayMs;
+    }
+
+    @Override
+    public void connect(SocketAddress endpoint) throws IOException {
+      connect(endpoint, 0);
+    }
+
+    @Override
+    public void connect(SocketAddress endpoint, int timeout) throws IOException {
+      if (!(endpoint instanceof InetSocketAddress)) {
+        throw new IllegalArgumentException("unsupported address " + endpoint);
+      }
+      InetSocketAddress address = (InetSocketAddress) endpoint;
+      String host = address.getHostString();
+      InetAddress[] addresses = InetAddress.getAllByName(host);
+      Socket socket = new Race().run(interleave(addresses), address.getPort(), timeout, attemptDelayMs);
+      if (tls != null) {
+        socket = tls.createSocket(socket, host, address.getPort(), true);
+      }
+      synchronized (this) {
+        if (closed) {
+          closeQuietly(socket);
+          throw new SocketException("Socket is closed");
+        }
+        delegate = socket;
+      }
+      if (soTimeout > 0) {
+        delegate.setSoTimeout(soTimeout);
+      }
+    }
+
+    private Socket connected() throws SocketException {
+      Socket socket = delegate;
+      if (socket == null) {
+        throw new SocketException("Socket is not connected");
+      }
+      return socket;
+    }
+
+    private SSLSocket ssl() {
+      if (!(delegate instanceof SSLSocket)) {
+        throw new IllegalStateException("not a connected TLS socket");
+      }
+      return (SSLSocket) delegate;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return connected().getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+      return connected().getOutputStream();
+    }
+
+    @Override
+    public void close() throws IOException {
+      Socket socket;
+      synchronized (this) {
+        closed = true;
+        socket = delegate;
+      }
+      if (socket != null) {
+        socket.close();
+      }
+    }
+
+    @Override
+    public boolean isConnected() {
+      return delegate != null && delegate.isConnected();
+    }
+
+    @Override
+    public boolean isClosed() {
+      return closed;
+    }
+
+    @Override
+    public void setSoTimeout(int timeout) throws SocketException {
+      soTimeout = timeout;
+      if (delegate != null) {
+        delegate.setSoTimeout(timeout);
+      }
+    }
+
+    @Override
+    public int getSoTimeout() throws SocketException {
+      return delegate != null ? delegate.getSoTimeout() : soTimeout;
+    }
+
+    @Override
+    public void setTcpNoDelay(boolean on) throws SocketException {
+      connected().setTcpNoDelay(on);
+    }
+
+    @Override
+    public void setKeepAlive(boolean on) throws SocketException {
+      connected().setKeepAlive(on);
+    }
+
+    @Override
+    public void shutdownInput() throws IOException {
+      connected().shutdownInput();
+    }
+
+    @Override
+    public void shutdownOutput() throws IOException {
+      connected().shutdownOutput();
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+      return delegate == null ? null : delegate.getInetAddress();
+    }
+
+    @Override
+    public int getPort() {
+      return delegate == null ? 0 : delegate.getPort();
+    }
+
+    @Override
+    public InetAddress getLocalAddress() {
+      return delegate == null ? null : delegate.getLocalAddress();
+    }
+
+    @Override
+    public int getLocalPort() {
+      return delegate == null ? -1 : delegate.getLocalPort();
+    }
+
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+      return delegate == null ? null : delegate.getRemoteSocketAddress();
+    }
+
+    @Override
+    public SocketAddress getLocalSocketAddress() {
+      return delegate == null ? null : delegate.getLocalSocketAddress();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+      return ssl().getSupportedCipherSuites();
+    }
+
+    @Override
+    public String[] getEnabledCipherSuites() {
+      return ssl().getEnabledCipherSuites();
+    }
+
+    @Override
+    public void setEnabledCipherSuites(String[] suites) {
+      ssl().setEnabledCipherSuites(suites);
+    }
+
+    @Override
+    public String[] getSupportedProtocols() {
+      return ssl().getSupportedProtocols();
+    }
+
+    @Override
+    public String[] getEnabledProtocols() {
+      return ssl().getEnabledProtocols();
+    }
+
+    @Override
+    public void setEnabledProtocols(String[] protocols) {
+      ssl().setEnabledProtocols(protocols);
+    }
+
+    @Override
+    public SSLSession getSession() {
+      return ssl().getSession();
+    }
+
+    @Override
+    public SSLParameters getSSLParameters() {
+      return ssl().getSSLParameters();
+    }
+
+    @Override
+    public void setSSLParameters(SSLParameters params) {
+      ssl().setSSLParameters(params);
+    }
+
+    @Override
+    public void addHandshakeCompletedListener(HandshakeCompletedListener listener) {
+      ssl().addHandshakeCompletedListener(listener);
+    }
+
+    @Override
+    public void removeHandshakeCompletedListener(HandshakeCompletedListener listener) {
+      ssl().removeHandshakeCompletedListener(listener);
+    }
+
+    @Override
+    public void startHandshake() throws IOException {
+      ssl().startHandshake();
+    }
+
+    @Override
+    public void setUseClientMode(boolean mode) {
+      ssl().setUseClientMode(mode);
+    }
+
+    @Override
+    public boolean getUseClientMode() {
+      return ssl().getUseClientMode();
+    }
+
+    @Override
+    public void setNeedClientAuth(boolean need) {
+      ssl().setNeedClientAuth(need);
+    }
+
+    @Override
+    public boolean getNeedClientAuth() {
+      return ssl().getNeedClientAuth();
+    }
+
+    @Override
+    public void setWantClientAuth(boolean want) {
+      ssl().setWantClientAuth(want);
+    }
+
+    @Override
+    public boolean getWantClientAuth() {
+      return ssl().getWantClientAuth();
+    }
+
+    @Override
+    public void setEnableSessionCreation(boolean flag) {
+      ssl().setEnableSessionCreation(flag);
+    }
+
+    @Override
+    public boolean getEnableSessionCreation() {
+      return ssl().getEnableSessionCreation();
+    }
+
+    @Override
+    public String toString() {
+      return "RacingSocket[" + delegate + "]";
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package com.mqttv3;
+
+/**
+ * A message accepted from paho and waiting to be handed to JS.
+ */
+public class InboundMessage {
+  private final String topic;
+  private final byte[] payload;
+  private final int qos;
+  private final boolean retained;
+  private final int[] listenerIds;
+  private final long arrivedAt;
+
+  public InboundMessage(String topic, byte[] payload, int qos, boolean retained, int[] listenerIds, long arrivedAt) {
+    this.topic = topic;
+    this.payload = payload;
+    this.qos = qos;
+    this.retained = retained;
+    this.listenerIds = listenerIds;
+    this.arrivedAt = arrivedAt;
+  }
+
+  public String getTopic() {
+    return topic;
+  }
+
+  public byte[] getPayload() {
+    return payload;
+  }
+
+  public int getQos() {
+    return qos;
+  }
+
+  public boolean isRetained() {
+    return retained;
+  }
+
+  public int[] getListenerIds() {
+    return listenerIds;
+  }
+
+  /**
+   * {@link System#nanoTime()} when paho handed the message over.
+   */
+  public long getArrivedAt() {
+    return arrivedAt;
+  }
+}
@@ -0,0 +1,273 @@
+package com.mqttv3;
+
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Bounded hand-off between paho and the bridge. Arrivals are queued and drained on a worker
+ * thread, which keeps at most {@link #MAX_UNCONSUMED} messages ahead of the JS thread. What
+ * happens once the queue is full is decided by the {@link Overflow} policy.
+ */
+public class InboundQueue {
+  // messages handed to the bridge that the JS thread has not reached yet
+  private static final int MAX_UNCONSUMED = 64;
+
+  private static final ExecutorService drainPool = Executors.newCachedThreadPool(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "MqttV3-inbound");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  public enum Overflow {
+    DROP_OLDEST("dropOldest"), DROP_NEWEST("dropNewest"), BLOCK("block"), SPILL("spill");
+
+    private final String value;
+
+    Overflow(String value) {
+      this.value = value;
+    }
+
+    public static Overflow fromString(@Nullable String value) {
+      for (Overflow overflow : values()) {
+        if (overflow.value.equalsIgnoreCase(value)) {
+          return overflow;
+        }
+      }
+      return DROP_OLDEST;
+    }
+  }
+
+  public interface Sink {
+    void emit(InboundMessage message);
+  }
+
+  private final ReactContext reactContext;
+  private final int capacity;
+  private final Overflow overflow;
+  private final Tracer tracer;
+  private final Sink sink;
+  @Nullable
+  private final SpillFile spillFile;
+  private final ArrayDeque<InboundMessage> queue = new ArrayDeque<>();
+  private final Runnable drainTask = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+  private final Runnable consumedTask = new Runnable() {
+    @Override
+    public void run() {
+      consumed();
+    }
+  };
+
+  private int unconsumed;
+  private boolean draining;
+  private boolean closed;
+  private long dropped;
+
+  public InboundQueue(ReactContext reactContext, String clientId, int capacity, Overflow overflow, Tracer tracer, Sink sink) {
+    this.reactContext = reactContext;
+    this.capacity = capacity;
+    this.overflow = overflow;
+    this.tracer = tracer;
+    this.sink = sink;
+    this.spillFile = overflow == Overflow.SPILL
+      ? new SpillFile(new File(reactContext.getCacheDir(), spillFileName(clientId)))
+      : null;
+  }
+
+  /**
+   * A name of its own for every client id, two clients never share a spill file.
+   */
+  static String spillFileName(String clientId) {
+    byte[] hash;
+    try {
+      hash = MessageDigest.getInstance("SHA-256").digest(clientId.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // every platform ships SHA-256
+      throw new IllegalStateException(e);
+    }
+    StringBuilder name = new StringBuilder("mqttv3-inbound-");
+    for (byte b : hash) {
+      name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return name.toString();
+  }
+
+  public void offer(InboundMessage message) {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      if (spillFile != null && spillFile.size() > 0) {
+        // keep arrival order, nothing may overtake what is already on disk
+        spill(message);
+      } else if (queue.size() < capacity) {
+        queue.add(message);
+      } else {
+        switch (overflow) {
+          case DROP_OLDEST:
+            queue.poll();
+            queue.add(message);
+            dropped++;
+            break;
+          case DROP_NEWEST:
+            dropped++;
+            break;
+          case BLOCK:
+            block(message);
+            break;
+          case SPILL:
+            spill(message);
+            break;
+        }
+      }
+      scheduleDrain();
+    }
+  }
+
+  /**
+   * Queues the message only if that needs no overflow handling.
+   *
+   * @return whether the message was queued or the queue is closed
+   */
+  public boolean tryOffer(InboundMessage message) {
+    synchronized (this) {
+      if (closed) {
+        return true;
+      }
+      if (queue.size() >= capacity || (spillFile != null && spillFile.size() > 0)) {
+        return false;
+      }
+      queue.add(message);
+      scheduleDrain();
+      return true;
+    }
+  }
+
+  private void block(InboundMessage message) {
+    if (onMainThread()) {
+      // never stall the UI thread, the message is dropped instead
+      dropped++;
+      return;
+    }
+    try {
+      while (!closed && queue.size() >= capacity) {
+        scheduleDrain();
+        wait();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      dropped++;
+      return;
+    }
+    if (!closed) {
+      queue.add(message);
+    }
+  }
+
+  boolean onMainThread() {
+    Looper main = Looper.getMainLooper();
+    return main != null && Looper.myLooper() == main;
+  }
+
+  private void spill(InboundMessage message) {
+    try {
+      spillFile.write(message);
+    } catch (IOException e) {
+      tracer.e("spill inbound message error", e);
+      dropped++;
+    }
+  }
+
+  private void scheduleDrain() {
+    if (!draining && unconsumed < MAX_UNCONSUMED && (!queue.isEmpty() || (spillFile != null && spillFile.size() > 0))) {
+      draining = true;
+      drainPool.execute(drainTask);
+    }
+  }
+
+  private void drain() {
+    while (true) {
+      InboundMessage message;
+      synchronized (this) {
+        if (closed || unconsumed >= MAX_UNCONSUMED) {
+          draining = false;
+          return;
+        }
+        message = queue.poll();
+        if (message == null && spillFile != null) {
+          message = unspill();
+        }
+        if (message == null) {
+          draining = false;
+          return;
+        }
+        unconsumed++;
+        notifyAll();
+      }
+      sink.emit(message);
+      // runs once the JS thread got through everything emitted before it
+      reactContext.runOnJSQueueThread(consumedTask);
+    }
+  }
+
+  @Nullable
+  private InboundMessage unspill() {
+    try {
+      return spillFile.read();
+    } catch (IOException e) {
+      tracer.e("read spilled inbound message error", e);
+      dropped += spillFile.size();
+      spillFile.delete();
+      return null;
+    }
+  }
+
+  private synchronized void consumed() {
+    unconsumed--;
+    scheduleDrain();
+  }
+
+  public synchronized WritableMap getStats() {
+    WritableMap stats = Arguments.createMap();
+    stats.putInt("depth", queue.size());
+    stats.putInt("spilled", spillFile == null ? 0 : spillFile.size());
+    stats.putInt("capacity", capacity);
+    stats.putDouble("dropped", dropped);
+    return stats;
+  }
+
+  public synchronized long getDropped() {
+    return dropped;
+  }
+
+  public synchronized void close() {
+    closed = true;
+    queue.clear();
+    if (spillFile != null) {
+      spillFile.delete();
+    }
+    notifyAll();
+  }
+}
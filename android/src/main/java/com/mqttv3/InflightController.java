@@ -0,0 +1,115 @@
+package com.mqttv3;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+
+/**
+ * In-flight window of the publish pipelines of one client, below paho's fixed maxInflight. With
+ * {@code adaptive} the window grows by one per window of acknowledgements while PUBACK latency
+ * stays near the lowest recently seen, and halves when latency climbs far above it or paho refuses
+ * a publish for a full window, the same additive-increase / multiplicative-decrease TCP uses. A
+ * pipeline saturates the link without queueing in the broker or hitting its limits.
+ */
+public class InflightController {
+  private static final int BASELINE_SAMPLES = 256;
+  // latency up to GROW_FACTOR times the baseline counts as an idle link, beyond SHRINK_FACTOR as queueing
+  private static final int GROW_FACTOR = 2;
+  private static final int SHRINK_FACTOR = 4;
+
+  private final int maxWindow;
+  private final boolean adaptive;
+  private final ArrayDeque<Runnable> waiters = new ArrayDeque<>();
+  private int window;
+  private int outstanding;
+  private int acked;
+  private int sinceShrink;
+  private int shrinkGuard;
+  private long baseline = Long.MAX_VALUE;
+  private long periodMin = Long.MAX_VALUE;
+  private int periodSamples;
+
+  public InflightController(int maxWindow, boolean adaptive) {
+    this.maxWindow = Math.max(1, maxWindow);
+    this.adaptive = adaptive;
+    this.window = adaptive ? Math.max(1, this.maxWindow / 2) : this.maxWindow;
+  }
+
+  /**
+   * Takes a slot of the window, or remembers {@code waiter} to run once a slot frees up.
+   */
+  public synchronized boolean tryAcquire(@Nullable Runnable waiter) {
+    if (outstanding < window) {
+      outstanding++;
+      return true;
+    }
+    if (waiter != null && !waiters.contains(waiter)) {
+      waiters.add(waiter);
+    }
+    return false;
+  }
+
+  /**
+   * Returns a slot taken by {@link #tryAcquire}.
+   *
+   * @param latencyNanos publish to acknowledgement, negative when the publish failed or was not
+   *                     acknowledged (QoS 0), then the slot is only freed
+   */
+  public void release(long latencyNanos) {
+    Runnable waiter;
+    synchronized (this) {
+      outstanding--;
+      if (adaptive && latencyNanos >= 0) {
+        sample(latencyNanos);
+      }
+      waiter = outstanding < window ? waiters.poll() : null;
+    }
+    if (waiter != null) {
+      waiter.run();
+    }
+  }
+
+  /**
+   * Paho refused a publish because its own window is full, e.g. of publishes made outside the
+   * pipelines.
+   */
+  public synchronized void rejected() {
+    if (adaptive) {
+      shrink();
+    }
+  }
+
+  private void sample(long latency) {
+    periodMin = Math.min(periodMin, latency);
+    // the baseline follows the minimum of the last period, so a route change can raise it
+    if (++periodSamples >= BASELINE_SAMPLES || baseline == Long.MAX_VALUE) {
+      baseline = periodMin;
+      periodMin = Long.MAX_VALUE;
+      periodSamples = 0;
+    }
+    sinceShrink++;
+    if (latency <= baseline * GROW_FACTOR) {
+      if (++acked >= window && window < maxWindow) {
+        window++;
+        acked = 0;
+      }
+    } else if (latency > baseline * SHRINK_FACTOR) {
+      shrink();
+    }
+  }
+
+  private void shrink() {
+    // at most once per window sent before shrinking, the acknowledgements of one burst report the same queue
+    if (sinceShrink < shrinkGuard) {
+      return;
+    }
+    shrinkGuard = window;
+    window = Math.max(1, window / 2);
+    acked = 0;
+    sinceShrink = 0;
+  }
+
+  public synchronized int getWindow() {
+    return window;
+  }
+}
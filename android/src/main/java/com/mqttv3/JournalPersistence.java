@@ -0,0 +1,507 @@
+package com.mqttv3;
+
+import androidx.annotation.Nullable;
+
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+import org.eclipse.paho.client.mqttv3.internal.MqttPersistentData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paho persistence writing every put and remove as a record appended to one memory-mapped file per
+ * client, instead of a file per message. Writes are forced to disk in batches a few milliseconds
+ * apart, and the journal is rewritten with only the live records in the background once most of
+ * it is dead. The live records are also kept in memory, paho only persists the in-flight window.
+ * Forcing and compacting run on {@link Schedulers#disk()} without holding the lock paho's puts and
+ * removes wait for, only close forces under it.
+ * <p>
+ * Record layout: int length of the rest, byte type, short key length, key, int header length,
+ * header, int payload length, payload. A zero type marks the end of the journal.
+ */
+public class JournalPersistence implements MqttClientPersistence {
+  private static final byte PUT = 1;
+  private static final byte REMOVE = 2;
+  private static final int INITIAL_CAPACITY = 64 * 1024;
+  private static final long SYNC_DELAY_MS = 20;
+  private static final int COMPACT_THRESHOLD = 256 * 1024;
+  // rounds of copying and forcing the records appended while compacting, before the rest is taken under the lock
+  private static final int CATCH_UP_ROUNDS = 4;
+
+  private final File directory;
+  private final Map<String, MqttPersistentData> records = new LinkedHashMap<>();
+  private File file;
+  private RandomAccessFile raf;
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private int liveBytes;
+  // changes whenever the journal is replaced other than by compaction, a compaction started before is dropped
+  private int epoch;
+  private ScheduledFuture<?> scheduledSync;
+  private boolean compacting;
+
+  private final Runnable syncTask = new Runnable() {
+    @Override
+    public void run() {
+      MappedByteBuffer mapped;
+      synchronized (JournalPersistence.this) {
+        scheduledSync = null;
+        mapped = buffer;
+      }
+      // msync outside the lock, puts and removes carry on meanwhile and are forced by the next sync;
+      // a mapping replaced since stays valid until it is collected
+      if (mapped != null) {
+        mapped.force();
+      }
+    }
+  };
+
+  private final Runnable compactTask = new Runnable() {
+    @Override
+    public void run() {
+      try {
+        compact();
+      } catch (IOException e) {
+        Tracer.DEFAULT.e("compact journal error", e);
+      } finally {
+        synchronized (JournalPersistence.this) {
+          compacting = false;
+        }
+      }
+    }
+  };
+
+  public JournalPersistence(File directory) {
+    this.directory = directory;
+  }
+
+  @Override
+  public synchronized void open(String clientId, String serverURI) throws MqttPersistenceException {
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new MqttPersistenceException(new IOException("can't create " + directory));
+    }
+    file = new File(directory, fileNameOf(clientId + "-" + serverURI) + ".journal");
+    epoch++;
+    try {
+      map(file, Math.max(INITIAL_CAPACITY, (int) file.length()));
+      replay();
+    } catch (IOException e) {
+      throw new MqttPersistenceException(e);
+    }
+  }
+
+  /**
+   * Falls back to the journal as it was before a failed compaction.
+   */
+  private void reopen() {
+    epoch++;
+    try {
+      unmap();
+      map(file, Math.max(INITIAL_CAPACITY, (int) file.length()));
+      replay();
+    } catch (IOException e) {
+      Tracer.DEFAULT.e("reopen journal error", e);
+    }
+  }
+
+  private static String fileNameOf(String key) {
+    StringBuilder name = new StringBuilder(key.length());
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      name.append(Character.isLetterOrDigit(c) || c == '-' ? c : '_');
+    }
+    return name.toString();
+  }
+
+  private void map(File target, int capacity) throws IOException {
+    raf = new RandomAccessFile(target, "rw");
+    channel = raf.getChannel();
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+  }
+
+  /**
+   * Drops the mapping without forcing it, the pages written stay in the page cache of the file.
+   */
+  private void unmap() throws IOException {
+    buffer = null;
+    if (raf != null) {
+      raf.close();
+    }
+    raf = null;
+    channel = null;
+  }
+
+  private void replay() {
+    records.clear();
+    liveBytes = 0;
+    buffer.position(0);
+    while (buffer.remaining() >= 5) {
+      int start = buffer.position();
+      int length = buffer.getInt();
+      if (length == 0) {
+        // the end of the journal
+        buffer.position(start);
+        return;
+      }
+      if (length < 0 || length > buffer.remaining() || !replayRecord(start + 4 + length)) {
+        // a torn or corrupt record, everything from it on is dropped
+        Tracer.DEFAULT.w("journal " + file + " truncated at " + start, null);
+        truncate(start);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Applies the record ending at {@code end}, the buffer being past its length.
+   *
+   * @return false when the record doesn't fit its length
+   */
+  private boolean replayRecord(int end) {
+    if (end - buffer.position() < 3) {
+      return false;
+    }
+    byte type = buffer.get();
+    if (type != PUT && type != REMOVE) {
+      return false;
+    }
+    byte[] keyBytes = new byte[buffer.getShort() & 0xffff];
+    if (keyBytes.length > end - buffer.position()) {
+      return false;
+    }
+    buffer.get(keyBytes);
+    String key = new String(keyBytes, StandardCharsets.UTF_8);
+    MqttPersistentData previous;
+    if (type == PUT) {
+      byte[] header = readBlock(end);
+      byte[] payload = header == null ? null : readBlock(end);
+      if (payload == null || buffer.position() != end) {
+        return false;
+      }
+      MqttPersistentData data = new MqttPersistentData(key, header, 0, header.length, payload, 0, payload.length);
+      previous = records.put(key, data);
+      liveBytes += recordSize(data);
+    } else {
+      if (buffer.position() != end) {
+        return false;
+      }
+      previous = records.remove(key);
+    }
+    if (previous != null) {
+      liveBytes -= recordSize(previous);
+    }
+    return true;
+  }
+
+  /**
+   * Reads an int length and that many bytes, or null when they run past {@code end}.
+   */
+  @Nullable
+  private byte[] readBlock(int end) {
+    if (end - buffer.position() < 4) {
+      return null;
+    }
+    int length = buffer.getInt();
+    if (length < 0 || length > end - buffer.position()) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Zeroes the journal from {@code position} on, so records appended there aren't followed by the
+   * remains of the corrupt ones on the next replay.
+   */
+  private void truncate(int position) {
+    buffer.position(position);
+    while (buffer.hasRemaining()) {
+      buffer.put((byte) 0);
+    }
+    buffer.position(position);
+  }
+
+  private static int recordSize(MqttPersistentData data) {
+    return 4 + 1 + 2 + data.getKey().getBytes(StandardCharsets.UTF_8).length + 4 + data.getHeaderLength() + 4 + data.getPayloadLength();
+  }
+
+  private void append(byte type, String key, byte[] header, byte[] payload) throws IOException {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    int length = 1 + 2 + keyBytes.length + (type == PUT ? 4 + header.length + 4 + payload.length : 0);
+    ensureCapacity(4 + length + 4);
+    write(buffer, type, keyBytes, header, payload);
+    scheduleSync();
+  }
+
+  private static void write(ByteBuffer target, byte type, byte[] keyBytes, byte[] header, byte[] payload) {
+    int length = 1 + 2 + keyBytes.length + (type == PUT ? 4 + header.length + 4 + payload.length : 0);
+    target.putInt(length);
+    target.put(type);
+    target.putShort((short) keyBytes.length);
+    target.put(keyBytes);
+    if (type == PUT) {
+      target.putInt(header.length);
+      target.put(header);
+      target.putInt(payload.length);
+      target.put(payload);
+    }
+  }
+
+  private void ensureCapacity(int bytes) throws IOException {
+    if (buffer.remaining() >= bytes) {
+      return;
+    }
+    buffer = remap(channel, buffer, bytes);
+  }
+
+  private static MappedByteBuffer remap(FileChannel target, MappedByteBuffer mapped, int bytes) throws IOException {
+    int position = mapped.position();
+    int capacity = mapped.capacity();
+    while (capacity - position < bytes) {
+      capacity *= 2;
+    }
+    // both mappings share the pages of the file, forcing the grown one also writes what was put before
+    MappedByteBuffer grown = target.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    grown.position(position);
+    return grown;
+  }
+
+  private void scheduleSync() {
+    if (scheduledSync == null) {
+      scheduledSync = Schedulers.disk().schedule(syncTask, SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void scheduleCompaction() {
+    int written = buffer.position();
+    if (!compacting && written > COMPACT_THRESHOLD && written > liveBytes * 2) {
+      compacting = true;
+      Schedulers.disk().execute(compactTask);
+    }
+  }
+
+  /**
+   * Writes the live records into a new journal and forces it without holding the lock, then copies
+   * over the records appended meanwhile in a few rounds, also outside the lock, and swaps it in.
+   */
+  private void compact() throws IOException {
+    List<MqttPersistentData> live;
+    File target;
+    int from;
+    int startEpoch;
+    synchronized (this) {
+      if (buffer == null) {
+        return;
+      }
+      live = new ArrayList<>(records.values());
+      target = file;
+      from = buffer.position();
+      startEpoch = epoch;
+    }
+    File compacted = new File(target.getPath() + ".compact");
+    if (compacted.exists() && !compacted.delete()) {
+      throw new IOException("can't delete " + compacted);
+    }
+    int size = 0;
+    for (MqttPersistentData data : live) {
+      size += recordSize(data);
+    }
+    RandomAccessFile out = new RandomAccessFile(compacted, "rw");
+    try {
+      FileChannel outChannel = out.getChannel();
+      MappedByteBuffer written = outChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_CAPACITY, size * 2));
+      for (MqttPersistentData data : live) {
+        write(written, PUT, data.getKey().getBytes(StandardCharsets.UTF_8), data.getHeaderBytes(),
+          data.getPayloadBytes() == null ? new byte[0] : data.getPayloadBytes());
+      }
+      written.force();
+      // the records appended meanwhile, copied as they are; appended records never change, so the
+      // range below the position read under the lock can be copied without it
+      for (int round = 0; round < CATCH_UP_ROUNDS; round++) {
+        ByteBuffer journal;
+        int to;
+        synchronized (this) {
+          if (buffer == null || epoch != startEpoch) {
+            // closed or cleared meanwhile
+            return;
+          }
+          journal = buffer.duplicate();
+          to = buffer.position();
+        }
+        if (to == from) {
+          break;
+        }
+        written = copy(outChannel, written, journal, from, to);
+        written.force();
+        from = to;
+      }
+      synchronized (this) {
+        if (buffer == null || epoch != startEpoch) {
+          return;
+        }
+        // what arrived during the last round is copied but not forced here, like any fresh record
+        // it reaches the disk with the next sync
+        boolean unforced = buffer.position() > from;
+        written = copy(outChannel, written, buffer.duplicate(), from, buffer.position());
+        int position = written.position();
+        out.close();
+        swap(compacted, position);
+        if (unforced) {
+          scheduleSync();
+        }
+      }
+    } finally {
+      out.close();
+      if (compacted.exists() && !compacted.delete()) {
+        Tracer.DEFAULT.w("can't delete " + compacted, null);
+      }
+    }
+  }
+
+  private static MappedByteBuffer copy(FileChannel target, MappedByteBuffer written, ByteBuffer journal, int from, int to) throws IOException {
+    journal.limit(to);
+    journal.position(from);
+    if (written.remaining() < journal.remaining() + 4) {
+      written = remap(target, written, journal.remaining() + 4);
+    }
+    written.put(journal);
+    return written;
+  }
+
+  /**
+   * Replaces the journal by the compacted one, the lock being held.
+   */
+  private void swap(File compacted, int position) {
+    try {
+      unmap();
+      if (!compacted.renameTo(file)) {
+        throw new IOException("can't replace " + file);
+      }
+      map(file, (int) file.length());
+      buffer.position(position);
+    } catch (IOException e) {
+      Tracer.DEFAULT.e("compact journal error", e);
+      reopen();
+    }
+  }
+
+  @Override
+  public synchronized void close() throws MqttPersistenceException {
+    if (scheduledSync != null) {
+      scheduledSync.cancel(false);
+      scheduledSync = null;
+    }
+    epoch++;
+    try {
+      if (buffer != null) {
+        buffer.force();
+      }
+      unmap();
+    } catch (IOException e) {
+      throw new MqttPersistenceException(e);
+    }
+    records.clear();
+  }
+
+  @Override
+  public synchronized void put(String key, MqttPersistable persistable) throws MqttPersistenceException {
+    checkOpen();
+    byte[] header = copyOf(persistable.getHeaderBytes(), persistable.getHeaderOffset(), persistable.getHeaderLength());
+    byte[] payload = copyOf(persistable.getPayloadBytes(), persistable.getPayloadOffset(), persistable.getPayloadLength());
+    try {
+      append(PUT, key, header, payload);
+    } catch (IOException e) {
+      throw new MqttPersistenceException(e);
+    }
+    MqttPersistentData data = new MqttPersistentData(key, header, 0, header.length, payload, 0, payload.length);
+    MqttPersistentData previous = records.put(key, data);
+    liveBytes += recordSize(data);
+    if (previous != null) {
+      liveBytes -= recordSize(previous);
+      scheduleCompaction();
+    }
+  }
+
+  private static byte[] copyOf(byte[] bytes, int offset, int length) {
+    byte[] copy = new byte[bytes == null ? 0 : length];
+    if (bytes != null) {
+      System.arraycopy(bytes, offset, copy, 0, length);
+    }
+    return copy;
+  }
+
+  @Override
+  public synchronized MqttPersistable get(String key) throws MqttPersistenceException {
+    checkOpen();
+    return records.get(key);
+  }
+
+  @Override
+  public synchronized void remove(String key) throws MqttPersistenceException {
+    checkOpen();
+    MqttPersistentData previous = records.remove(key);
+    if (previous == null) {
+      return;
+    }
+    try {
+      append(REMOVE, key, null, null);
+    } catch (IOException e) {
+      throw new MqttPersistenceException(e);
+    }
+    liveBytes -= recordSize(previous);
+    scheduleCompaction();
+  }
+
+  // raw as in paho's MqttClientPersistence
+  @SuppressWarnings("rawtypes")
+  @Override
+  public synchronized Enumeration keys() throws MqttPersistenceException {
+    checkOpen();
+    return Collections.enumeration(new ArrayList<>(records.keySet()));
+  }
+
+  @Override
+  public synchronized void clear() throws MqttPersistenceException {
+    checkOpen();
+    records.clear();
+    liveBytes = 0;
+    epoch++;
+    try {
+      unmap();
+      if (file.exists() && !file.delete()) {
+        throw new IOException("can't delete " + file);
+      }
+      map(file, INITIAL_CAPACITY);
+    } catch (IOException e) {
+      throw new MqttPersistenceException(e);
+    }
+  }
+
+  @Override
+  public synchronized boolean containsKey(String key) throws MqttPersistenceException {
+    checkOpen();
+    return records.containsKey(key);
+  }
+
+  private void checkOpen() throws MqttPersistenceException {
+    if (buffer == null) {
+      throw new MqttPersistenceException(MqttPersistenceException.REASON_CODE_PERSISTENCE_IN_USE);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.mqttv3;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Parses JSON payloads into bridge maps and arrays on the delivery worker, so JS receives the
+ * structured value instead of base64 it has to decode and parse on its own thread.
+ */
+public class JsonPayloads {
+  /**
+   * Puts the parsed payload under {@code key}, or the parse error under {@code errorKey}.
+   *
+   * @return whether the payload was parsed
+   */
+  public static boolean put(WritableMap event, String key, String errorKey, byte[] payload) {
+    try {
+      Object value = new JSONTokener(new String(payload, StandardCharsets.UTF_8)).nextValue();
+      putValue(event, key, value);
+      return true;
+    } catch (JSONException | ClassCastException e) {
+      event.putString(errorKey, e.getMessage() == null ? "invalid json" : e.getMessage());
+      return false;
+    }
+  }
+
+  private static void putValue(WritableMap map, String key, Object value) throws JSONException {
+    if (value == null || value == JSONObject.NULL) {
+      map.putNull(key);
+    } else if (value instanceof JSONObject) {
+      map.putMap(key, toMap((JSONObject) value));
+    } else if (value instanceof JSONArray) {
+      map.putArray(key, toArray((JSONArray) value));
+    } else if (value instanceof Boolean) {
+      map.putBoolean(key, (Boolean) value);
+    } else if (value instanceof Number) {
+      map.putDouble(key, ((Number) value).doubleValue());
+    } else if (value instanceof String) {
+      map.putString(key, (String) value);
+    } else {
+      throw new JSONException("unexpected " + value);
+    }
+  }
+
+  private static WritableMap toMap(JSONObject object) throws JSONException {
+    WritableMap map = Arguments.createMap();
+    Iterator<String> keys = object.keys();
+    while (keys.hasNext()) {
+      String key = keys.next();
+      putValue(map, key, object.opt(key));
+    }
+    return map;
+  }
+
+  private static WritableArray toArray(JSONArray array) throws JSONException {
+    WritableArray out = Arguments.createArray();
+    for (int i = 0; i < array.length(); i++) {
+      Object value = array.opt(i);
+      if (value == null || value == JSONObject.NULL) {
+        out.pushNull();
+      } else if (value instanceof JSONObject) {
+        out.pushMap(toMap((JSONObject) value));
+      } else if (value instanceof JSONArray) {
+        out.pushArray(toArray((JSONArray) value));
+      } else if (value instanceof Boolean) {
+        out.pushBoolean((Boolean) value);
+      } else if (value instanceof Number) {
+        out.pushDouble(((Number) value).doubleValue());
+      } else if (value instanceof String) {
+        out.pushString((String) value);
+      } else {
+        throw new JSONException("unexpected " + value);
+      }
+    }
+    return out;
+  }
+}
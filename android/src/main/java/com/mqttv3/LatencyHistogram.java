@@ -0,0 +1,58 @@
+package com.mqttv3;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-bucket latency histogram. Recording is a bucket search over a dozen bounds and two atomic
+ * increments, no lock is taken so it is safe to call from paho and delivery threads alike.
+ */
+public class LatencyHistogram {
+  /**
+   * Upper bounds of the buckets in milliseconds, the last bucket has no upper bound.
+   */
+  private static final double[] BOUNDS_MS = {0.1, 0.5, 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000};
+  private static final long[] BOUNDS_NANOS = new long[BOUNDS_MS.length];
+
+  static {
+    for (int i = 0; i < BOUNDS_MS.length; i++) {
+      BOUNDS_NANOS[i] = (long) (BOUNDS_MS[i] * 1_000_000);
+    }
+  }
+
+  private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_MS.length + 1);
+  private final AtomicLong totalNanos = new AtomicLong();
+
+  public void record(long nanos) {
+    int bucket = 0;
+    while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+      bucket++;
+    }
+    counts.incrementAndGet(bucket);
+    totalNanos.addAndGet(nanos);
+  }
+
+  public WritableMap toWritableMap() {
+    WritableMap map = Arguments.createMap();
+    WritableArray bounds = Arguments.createArray();
+    for (double bound : BOUNDS_MS) {
+      bounds.pushDouble(bound);
+    }
+    WritableArray buckets = Arguments.createArray();
+    long count = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      long c = counts.get(i);
+      buckets.pushDouble(c);
+      count += c;
+    }
+    map.putArray("bounds", bounds);
+    map.putArray("counts", buckets);
+    map.putDouble("count", count);
+    map.putDouble("meanMs", count == 0 ? 0 : totalNanos.get() / 1_000_000.0 / count);
+    return map;
+  }
+}
@@ -0,0 +1,98 @@
+package com.mqttv3;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces inbound messages into a single bridge event, flushed when the window elapses or the
+ * batch is full, whichever comes first.
+ */
+public class MessageBatcher {
+  private final ClientSession session;
+  private final String eventName;
+  private final long windowMs;
+  private final int maxSize;
+  private final ClientStats stats;
+  private final Runnable flushTask = new Runnable() {
+    @Override
+    public void run() {
+      flush();
+    }
+  };
+
+  private WritableArray pending;
+  private int pendingSize;
+  // arrival of each pending message, for the delivery latency once the batch is emitted
+  private final long[] arrivedAts;
+  private ScheduledFuture<?> scheduledFlush;
+  private boolean closed;
+
+  public MessageBatcher(ClientSession session, String eventName, long windowMs, int maxSize, ClientStats stats) {
+    this.session = session;
+    this.eventName = eventName;
+    this.windowMs = windowMs;
+    this.maxSize = maxSize;
+    this.stats = stats;
+    this.arrivedAts = new long[maxSize];
+  }
+
+  /**
+   * @param arrivedAt {@link System#nanoTime()} when paho handed the message over
+   */
+  public void add(WritableMap message, long arrivedAt) {
+    WritableArray full = null;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      if (pending == null) {
+        pending = Arguments.createArray();
+        scheduledFlush = Schedulers.shared().schedule(flushTask, windowMs, TimeUnit.MILLISECONDS);
+      }
+      pending.pushMap(message);
+      arrivedAts[pendingSize] = arrivedAt;
+      if (++pendingSize >= maxSize) {
+        full = takePending(true);
+      }
+    }
+    if (full != null) {
+      session.emit(eventName, full);
+    }
+  }
+
+  public void flush() {
+    WritableArray batch;
+    synchronized (this) {
+      batch = takePending(true);
+    }
+    if (batch != null) {
+      session.emit(eventName, batch);
+    }
+  }
+
+  public synchronized void close() {
+    closed = true;
+    takePending(false);
+  }
+
+  private WritableArray takePending(boolean emitting) {
+    WritableArray batch = pending;
+    if (emitting) {
+      // the batch is emitted right after, the window it waited in counts towards the latency
+      for (int i = 0; i < pendingSize; i++) {
+        stats.messageEmitted(arrivedAts[i]);
+      }
+    }
+    pending = null;
+    pendingSize = 0;
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    return batch;
+  }
+}
@@ -0,0 +1,74 @@
+package com.mqttv3;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Resolves which JS listeners want a message, so arrivals nobody listens for never cross the
+ * bridge. Listeners registered without a filter receive everything.
+ * <p>
+ * The listener ids of a topic are kept until a listener is added or removed, so messages on a
+ * topic seen before share one array instead of allocating their own. The arrays are never written
+ * after they are returned.
+ */
+public class MessageRouter {
+  private static final int[] NO_LISTENERS = new int[0];
+  // topics of high cardinality start over instead of growing the cache without bound
+  private static final int CACHE_SIZE = 1024;
+
+  private final TopicTrie<Integer> filters = new TopicTrie<>();
+  private final Set<Integer> catchAll = new CopyOnWriteArraySet<>();
+  private volatile ConcurrentHashMap<String, int[]> routes = new ConcurrentHashMap<>();
+  // only touched by the callback thread of the client, one message is routed at a time
+  private final ArrayList<Integer> scratch = new ArrayList<>();
+
+  public void add(@Nullable String filter, int listenerId) {
+    if (filter == null) {
+      catchAll.add(listenerId);
+    } else {
+      filters.add(filter, listenerId);
+    }
+    // after changing the filters, a route computed from the old ones is dropped with the old cache
+    routes = new ConcurrentHashMap<>();
+  }
+
+  public void remove(@Nullable String filter, int listenerId) {
+    if (filter == null) {
+      catchAll.remove(listenerId);
+    } else {
+      filters.remove(filter, listenerId);
+    }
+    routes = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * @return the ids of the listeners wanting a message on {@code topic}, shared, not to be modified
+   */
+  public int[] route(String topic) {
+    ConcurrentHashMap<String, int[]> cache = routes;
+    int[] listenerIds = cache.get(topic);
+    if (listenerIds != null) {
+      return listenerIds;
+    }
+    scratch.clear();
+    scratch.addAll(catchAll);
+    filters.match(topic, scratch);
+    if (scratch.isEmpty()) {
+      listenerIds = NO_LISTENERS;
+    } else {
+      listenerIds = new int[scratch.size()];
+      for (int i = 0; i < listenerIds.length; i++) {
+        listenerIds[i] = scratch.get(i);
+      }
+    }
+    if (cache.size() >= CACHE_SIZE) {
+      cache.clear();
+    }
+    cache.put(topic, listenerIds);
+    return listenerIds;
+  }
+}
@@ -1,7 +1,6 @@
 package com.mqttv3;
 
 import android.util.Base64;
-import android.util.Log;
 
 import androidx.annotation.Nullable;
 
@@ -9,8 +8,8 @@ import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.modules.core.DeviceEventManagerModule;
 
 import org.eclipse.paho.android.service.MqttAndroidClient;
 import org.eclipse.paho.client.mqttv3.IMqttActionListener;
@@ -18,34 +17,34 @@ import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.IMqttToken;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
 import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence;
 
-import java.io.ByteArrayInputStream;
-import java.nio.charset.StandardCharsets;
-import java.security.KeyStore;
-import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
-import java.security.cert.X509Certificate;
-import java.util.HashMap;
-import java.util.Map;
-
-import javax.net.ssl.KeyManager;
-import javax.net.ssl.KeyManagerFactory;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import javax.net.SocketFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.TrustManagerFactory;
-import javax.net.ssl.X509TrustManager;
 
 public class MqttV3Client {
   public static final String NAME = "MqttV3";
   public static final String CONNECT_PREFIX = NAME + ":onConnect:";
   public static final String DISCONNECT_PREFIX = NAME + ":onDisconnect:";
   public static final String MESSAGE_PREFIX = NAME + ":onMessage:";
-  private static final Map<String, MqttAndroidClient> clients = new HashMap<>();
+  public static final String MESSAGES_PREFIX = NAME + ":onMessages:";
+  public static final String TLS_HANDSHAKE_PREFIX = NAME + ":onTlsHandshake:";
+  public static final String BUFFER_DRAIN_PREFIX = NAME + ":onBufferDrain:";
+  public static final String RECONNECT_PREFIX = NAME + ":onReconnect:";
+  private static final ClientRegistry clients = new ClientRegistry();
+  private static final int[] NO_LISTENER_IDS = new int[0];
 
 
   private static WritableMap writableMapOf(String... str) {
@@ -56,130 +55,298 @@ public class MqttV3Client {
     return map;
   }
 
-  private static void sendEvent(ReactContext reactContext, String eventName, @Nullable WritableMap params) {
-    reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(eventName, params);
-  }
-
-  private static TrustManager[] getTrustManagers(String ca) throws Exception {
-    CertificateFactory cf = CertificateFactory.getInstance("X.509");
-    byte[] bytes;
-    if (ca.startsWith("-----BEGIN CERTIFICATE-----")) {
-      bytes = ca.getBytes(StandardCharsets.UTF_8);
-    } else {
-      bytes = Base64.decode(ca, Base64.CRLF);
-    }
-    try (ByteArrayInputStream bis = new ByteArrayInputStream(bytes)) {
-      X509Certificate caCert = (X509Certificate) cf.generateCertificate(bis);
-      KeyStore caKs = KeyStore.getInstance(KeyStore.getDefaultType());
-      caKs.load(null, null);
-      caKs.setCertificateEntry("cert-certificate", caCert);
-      TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-      tmf.init(caKs);
-      return tmf.getTrustManagers();
+  /**
+   * Looks up a client that can take publishes and subscriptions, rejecting the promise otherwise.
+   */
+  @Nullable
+  private static ClientSession getActiveSession(String clientId, Promise promise) {
+    ClientSession session = clients.get(clientId);
+    if (session == null) {
+      promise.reject("error", "client doesn't create");
+      return null;
     }
-  }
-
-  private static TrustManager[] getInsecureTrustManagers() throws Exception {
-    TrustManager[] trustAllCerts = new TrustManager[]{new X509TrustManager() {
-      @Override
-      public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
-      }
-
-      @Override
-      public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
-      }
-
-      public X509Certificate[] getAcceptedIssuers() {
-        return new X509Certificate[0];
-      }
-    }};
-    return trustAllCerts;
-  }
-
-  private static KeyManager[] getKeyManagers(String p12, String pass) throws Exception {
-    KeyStore keyStore = KeyStore.getInstance("PKCS12");
-    char[] password = pass == null ? "".toCharArray() : pass.toCharArray();
-    try (ByteArrayInputStream bis = new ByteArrayInputStream(Base64.decode(p12, Base64.CRLF))) {
-      keyStore.load(bis, password);
+    switch (session.getState()) {
+      case DISCONNECTING:
+        promise.reject("error", "client is disconnecting");
+        return null;
+      case CLOSED:
+        promise.reject("error", "client is closed");
+        return null;
+      default:
+        if (!session.hasConnected()) {
+          promise.reject("error", "client isn't connected");
+          return null;
+        }
+        return session;
     }
-    KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
-    keyManagerFactory.init(keyStore, password);
-
-    return keyManagerFactory.getKeyManagers();
   }
 
-
-  private static SSLSocketFactory getTlsSocketFactory(String p12, String pass, String ca, boolean insecure) throws Exception {
-    TrustManager[] trustManagers = insecure ? getInsecureTrustManagers() : ca == null ? null : getTrustManagers(ca);
-    KeyManager[] keyManagers = p12 == null && pass == null ? null : getKeyManagers(p12, pass);
-    SSLContext sslContext = SSLContext.getInstance("TLS");
-    sslContext.init(keyManagers, trustManagers, null);
-    return sslContext.getSocketFactory();
+  private static MqttClientPersistence createPersistence(ReactContext reactContext, ClientOptions clientOptions) {
+    File directory = new File(reactContext.getFilesDir(), NAME);
+    switch (clientOptions.getPersistence()) {
+      case FILE:
+        return new MqttDefaultFilePersistence(directory.getAbsolutePath());
+      case JOURNAL:
+        return new JournalPersistence(directory);
+      default:
+        return new MemoryPersistence();
+    }
   }
 
   public static void createClient(ReactApplicationContext reactApplicationContext, ClientOptions clientOptions, Promise promise) {
     String clientId = clientOptions.getClientId();
-    MqttAndroidClient client = clients.get(clientId);
-    if (client != null) {
-      Log.d(NAME, "get mqtt v3 client " + clientId);
+    ClientSession existing = clients.get(clientId);
+    if (existing != null) {
+      Tracer tracer = existing.getTracer();
+      if (tracer.isDebugEnabled()) {
+        tracer.d("get mqtt v3 client " + clientId);
+      }
       promise.resolve(clientId);
       return;
     }
     String url = clientOptions.getUrl();
-    Log.d(NAME, "create mqtt v3 client " + url);
-    MqttAndroidClient mqttAndroidClient = new MqttAndroidClient(reactApplicationContext, url, clientId, new MemoryPersistence());
+    MqttAndroidClient mqttAndroidClient = new MqttAndroidClient(reactApplicationContext, url, clientId, createPersistence(reactApplicationContext, clientOptions));
+    ClientSession session = new ClientSession(reactApplicationContext, mqttAndroidClient, clientOptions);
+    MessageBatcher batcher = session.getBatcher();
+    Tracer tracer = session.getTracer();
+    if (tracer.isInfoEnabled()) {
+      tracer.i("create mqtt v3 client " + url);
+    }
+    String messageEvent = MESSAGE_PREFIX + clientId;
+    String connectEvent = CONNECT_PREFIX + clientId;
+    String disconnectEvent = DISCONNECT_PREFIX + clientId;
+    boolean binary = clientOptions.isBinary();
+    ClientStats stats = session.getStats();
+    // only touched by the delivery worker of the queue, one drain runs at a time
+    Base64Encoder encoder = new Base64Encoder();
+    ArrayList<String> jsonFilters = new ArrayList<>();
+    session.setInboundQueue(new InboundQueue(reactApplicationContext, clientId, clientOptions.getInboundQueueSize(), clientOptions.getInboundOverflow(), tracer, new InboundQueue.Sink() {
+      @Override
+      public void emit(InboundMessage message) {
+        if (binary) {
+          BinaryBridge.dispatchMessage(reactApplicationContext, clientId, message.getTopic(), message.getPayload());
+          stats.messageEmitted(message.getArrivedAt());
+          return;
+        }
+        WritableMap event = Arguments.createMap();
+        event.putString("topic", message.getTopic());
+        // parsed here on the delivery worker, a payload that isn't JSON still arrives as base64
+        if (session.isJsonPayload(message.getTopic(), jsonFilters)
+          && JsonPayloads.put(event, "payload", "payloadError", message.getPayload())) {
+          event.putString("base64Message", "");
+        } else {
+          event.putString("base64Message", encoder.encode(message.getPayload()));
+        }
+        WritableArray ids = Arguments.createArray();
+        for (int listenerId : message.getListenerIds()) {
+          ids.pushInt(listenerId);
+        }
+        event.putArray("listenerIds", ids);
+        if (batcher != null) {
+          // the latency is recorded when the batch is emitted
+          batcher.add(event, message.getArrivedAt());
+        } else {
+          session.emit(messageEvent, event);
+          stats.messageEmitted(message.getArrivedAt());
+        }
+      }
+    }));
+    // the callbacks of one client never run concurrently
+    TopicInterner interner = new TopicInterner();
 
     mqttAndroidClient.setCallback(new MqttCallbackExtended() {
       @Override
       public void connectComplete(boolean reconnect, String serverURI) {
-        Log.d(NAME, "connectComplete... reconnect:" + reconnect);
-        sendEvent(reactApplicationContext, CONNECT_PREFIX + mqttAndroidClient.getClientId(), writableMapOf("clientId", clientId));
+        if (tracer.isInfoEnabled()) {
+          tracer.i("connectComplete... reconnect:" + reconnect);
+        }
+        session.connected();
+        session.emit(connectEvent, writableMapOf("clientId", clientId));
       }
 
       @Override
       public void connectionLost(Throwable cause) {
-        Log.d(NAME, "connectionLost...", cause);
+        tracer.w("connectionLost...", cause);
+        ReconnectScheduler reconnectScheduler = session.getReconnectScheduler();
+        // also called after a requested disconnect, which has already left CONNECTED
+        if (reconnectScheduler.isEnabled() && session.transition(ClientSession.State.CONNECTED, ClientSession.State.CONNECTING)) {
+          session.newConnectAttempt();
+          reconnectScheduler.connectionLost();
+        } else {
+          session.transition(ClientSession.State.CONNECTED, ClientSession.State.CREATED);
+        }
         String message = "disconnect";
         if (cause != null && cause.getMessage() != null) {
           message = cause.getMessage();
         }
-        sendEvent(reactApplicationContext, DISCONNECT_PREFIX + mqttAndroidClient.getClientId(), writableMapOf("message", message));
+        session.emit(disconnectEvent, writableMapOf("message", message));
       }
 
       @Override
-      public void messageArrived(String topic, MqttMessage message) {
-        Log.d(NAME, "messageArrived..." + clientId + " " + topic + ":" + new String(message.getPayload(), StandardCharsets.UTF_8));
-        sendEvent(reactApplicationContext, MESSAGE_PREFIX + mqttAndroidClient.getClientId(), writableMapOf("topic", topic, "base64Message", Base64.encodeToString(message.getPayload(), Base64.NO_WRAP)));
+      public void messageArrived(String arrivedTopic, MqttMessage message) {
+        String topic = interner.intern(arrivedTopic);
+        byte[] payload = message.getPayload();
+        if (tracer.sampleMessage()) {
+          tracer.d("messageArrived... " + clientId + " " + topic + " qos:" + message.getQos() + " retained:" + message.isRetained() + " bytes:" + payload.length);
+        }
+        stats.messageArrived(payload.length);
+        PayloadCodec codec = clientOptions.getCompression();
+        if (codec != null) {
+          try {
+            payload = codec.decode(topic, payload);
+          } catch (DataFormatException e) {
+            tracer.w("decompress " + topic + " error", e);
+          }
+        }
+        if (session.getRpcClient().messageArrived(topic, payload)) {
+          return;
+        }
+        Deduplicator dedup = session.getDedup();
+        if (dedup != null && message.getQos() > 0 && dedup.isDuplicate(topic, payload, message.isDuplicate())) {
+          if (tracer.sampleMessage()) {
+            tracer.d("duplicate suppressed... " + topic + " dup:" + message.isDuplicate());
+          }
+          return;
+        }
+        RetainedCache retainedCache = session.getRetainedCache();
+        if (retainedCache != null) {
+          retainedCache.put(topic, payload, message.getQos(), message.isRetained());
+        }
+        int[] listenerIds = NO_LISTENER_IDS;
+        if (!binary) {
+          // shared by the messages of the topic until the listeners change
+          listenerIds = session.getRouter().route(topic);
+          if (listenerIds.length == 0) {
+            return;
+          }
+        }
+        InboundMessage inbound = new InboundMessage(topic, payload, message.getQos(), message.isRetained(), listenerIds, System.nanoTime());
+        if (!session.getConflater().offer(inbound)) {
+          session.getInboundQueue().offer(inbound);
+        }
       }
 
       @Override
       public void deliveryComplete(IMqttDeliveryToken token) {
-        Log.d(NAME, "deliveryComplete..." + token.getMessageId());
+        if (tracer.sampleMessage()) {
+          tracer.d("deliveryComplete... " + token.getMessageId());
+        }
       }
     });
-    clients.put(clientId, mqttAndroidClient);
+    existing = clients.putIfAbsent(clientId, session);
+    if (existing != null) {
+      // created concurrently for the same clientId, keep the registered one
+      session.markClosed();
+      session.close();
+    }
     promise.resolve(clientId);
   }
 
+  public static void addMessageRoute(String clientId, @Nullable String filter, int listenerId) {
+    ClientSession session = clients.get(clientId);
+    if (session == null) {
+      Tracer.DEFAULT.w("client doesn't create");
+      return;
+    }
+    session.getRouter().add(filter, listenerId);
+  }
+
+  public static void removeMessageRoute(String clientId, @Nullable String filter, int listenerId) {
+    ClientSession session = clients.get(clientId);
+    if (session != null) {
+      session.getRouter().remove(filter, listenerId);
+    }
+  }
+
+  public static void getInboundStats(String clientId, Promise promise) {
+    ClientSession session = clients.get(clientId);
+    if (session == null) {
+      promise.reject("error", "client doesn't create");
+      return;
+    }
+    promise.resolve(session.getInboundQueue().getStats());
+  }
+
+  public static void getSnapshot(String clientId, String filter, boolean json, Promise promise) {
+    ClientSession session = clients.get(clientId);
+    if (session == null) {
+      promise.reject("error", "client doesn't create");
+      return;
+    }
+    RetainedCache retainedCache = session.getRetainedCache();
+    promise.resolve(retainedCache == null ? Arguments.createArray() : retainedCache.snapshot(filter, json));
+  }
+
+  public static void getBufferedMessageCount(String clientId, Promise promise) {
+    ClientSession session = clients.get(clientId);
+    if (session == null) {
+      promise.reject("error", "client doesn't create");
+      return;
+    }
+    OfflineBuffer offlineBuffer = session.getOfflineBuffer();
+    promise.resolve(offlineBuffer == null ? 0 : offlineBuffer.getCount(session.getClient()));
+  }
+
+  public static void getStats(String clientId, Promise promise) {
+    ClientSession session = clients.get(clientId);
+    if (session == null) {
+      promise.reject("error", "client doesn't create");
+      return;
+    }
+    WritableMap stats = Arguments.createMap();
+    session.getStats().writeTo(stats);
+    stats.putDouble("dropped", session.getInboundQueue().getDropped());
+    MqttAndroidClient client = session.getClient();
+    // the service only knows the connection once it has been established
+    stats.putInt("inFlight", session.hasConnected() && client.isConnected() ? client.getInFlightMessageCount() : 0);
+    stats.putString("state", session.getState().name());
+    Deduplicator dedup = session.getDedup();
+    stats.putDouble("dedupChecked", dedup == null ? 0 : dedup.getChecked());
+    stats.putDouble("dedupSuppressed", dedup == null ? 0 : dedup.getSuppressed());
+    stats.putDouble("conflated", session.getConflater().getConflated());
+    stats.putInt("inflightWindow", session.getInflightController().getWindow());
+    promise.resolve(stats);
+  }
+
   public static void close(String clientId, Promise promise) {
-    MqttAndroidClient client = clients.get(clientId);
-    if (client == null) {
-      Log.w(NAME, "client doesn't create");
-    } else {
-      client.close();
-      clients.remove(clientId);
-      Log.d(NAME, "client closed");
+    ClientSession session = clients.get(clientId);
+    if (session == null) {
+      Tracer.DEFAULT.w("client doesn't create");
+    } else if (session.markClosed() != ClientSession.State.CLOSED) {
+      // unregister first so no new operation finds the session while it is torn down
+      clients.remove(clientId, session);
+      session.close();
+      session.getTracer().i("client closed");
     }
     promise.resolve(clientId);
   }
 
   public static void connect(ClientOptions clientOptions, Promise promise) {
     String clientId = clientOptions.getClientId();
-    MqttAndroidClient client = clients.get(clientId);
-    if (client == null) {
+    ClientSession session = clients.get(clientId);
+    if (session == null) {
       promise.reject("error", "client doesn't create");
       return;
     }
+    if (!session.transition(ClientSession.State.CREATED, ClientSession.State.CONNECTING)) {
+      switch (session.getState()) {
+        case CONNECTED:
+          promise.resolve(clientId);
+          return;
+        case CONNECTING:
+          promise.reject("error", "client is connecting");
+          return;
+        case DISCONNECTING:
+          promise.reject("error", "client is disconnecting");
+          return;
+        default:
+          promise.reject("error", "client is closed");
+          return;
+      }
+    }
+    final int generation = session.newConnectAttempt();
+    MqttAndroidClient client = session.getClient();
+    Tracer tracer = session.getTracer();
 
     MqttConnectOptions mqttConnectOptions = new MqttConnectOptions();
     if (clientOptions.getUsername() != null) {
@@ -189,148 +356,339 @@ public class MqttV3Client {
       }
     }
 
-    mqttConnectOptions.setAutomaticReconnect(clientOptions.isAutomaticReconnect());
+    mqttConnectOptions.setCleanSession(clientOptions.isClean());
+    if (clientOptions.getKeepalive() != null) {
+      mqttConnectOptions.setKeepAliveInterval(clientOptions.getKeepalive());
+    }
+    if (clientOptions.getConnectTimeout() != null) {
+      // milliseconds in the options, whole seconds in paho, 0 waits forever
+      mqttConnectOptions.setConnectionTimeout((clientOptions.getConnectTimeout() + 999) / 1000);
+    }
+    if (clientOptions.getProtocolVersion() != null) {
+      mqttConnectOptions.setMqttVersion(clientOptions.getProtocolVersion() == 3 ? MqttConnectOptions.MQTT_VERSION_3_1 : MqttConnectOptions.MQTT_VERSION_3_1_1);
+    }
+    ClientOptions.WillOptions will = clientOptions.getWill();
+    if (will != null) {
+      mqttConnectOptions.setWill(will.getTopic(), will.getPayload(), will.getQos(), will.isRetain());
+    }
+    if (clientOptions.getMaxInflight() != null) {
+      mqttConnectOptions.setMaxInflight(clientOptions.getMaxInflight());
+    }
+    // reconnecting is done by the reconnect scheduler, with jitter instead of paho's fixed backoff
+    mqttConnectOptions.setAutomaticReconnect(false);
+    session.getReconnectScheduler().configure(clientOptions.isAutomaticReconnect() ? mqttConnectOptions : null, clientOptions);
+    // the service reconnects sessions with clean false on network changes, it must not race the scheduler
+    client.setServiceReconnect(!clientOptions.isAutomaticReconnect());
 
     try {
       String p12 = clientOptions.getP12();
       String pass = clientOptions.getPass();
       String ca = clientOptions.getCa();
-      if (p12 != null || ca != null || clientOptions.isInsecure()) {
-        mqttConnectOptions.setSocketFactory(getTlsSocketFactory(p12, pass, ca, clientOptions.isInsecure()));
+      if (clientOptions.isTlsResumption() && clientOptions.isSecure()) {
+        SSLContext sslContext = TlsContexts.getContext(p12, pass, ca, clientOptions.isInsecure(), clientOptions.getTlsSessionCacheSize(), clientOptions.getTlsSessionTimeout());
+        mqttConnectOptions.setSocketFactory(new TlsSessionSocketFactory(sslContext, new TlsSessionSocketFactory.Listener() {
+          @Override
+          public void onHandshake(boolean resumed, String protocol, String cipherSuite, long elapsedMs) {
+            WritableMap event = writableMapOf("protocol", protocol, "cipherSuite", cipherSuite);
+            event.putBoolean("resumed", resumed);
+            event.putDouble("elapsedMs", elapsedMs);
+            session.emit(TLS_HANDSHAKE_PREFIX + clientId, event);
+          }
+        }));
+        if (p12 != null || ca != null || clientOptions.isInsecure()) {
+          mqttConnectOptions.setHttpsHostnameVerificationEnabled(false);
+        }
+      } else if (p12 != null || ca != null || clientOptions.isInsecure()) {
+        mqttConnectOptions.setSocketFactory(TlsContexts.getSocketFactory(p12, pass, ca, clientOptions.isInsecure()));
         mqttConnectOptions.setHttpsHostnameVerificationEnabled(false);
       }
+      if (clientOptions.isHappyEyeballs()) {
+        SocketFactory socketFactory = mqttConnectOptions.getSocketFactory();
+        if (!clientOptions.isSecure()) {
+          mqttConnectOptions.setSocketFactory(HappyEyeballs.socketFactory(clientOptions.getHappyEyeballsDelay()));
+        } else if (socketFactory instanceof SSLSocketFactory) {
+          mqttConnectOptions.setSocketFactory(HappyEyeballs.sslSocketFactory((SSLSocketFactory) socketFactory, clientOptions.getHappyEyeballsDelay()));
+        } else {
+          mqttConnectOptions.setSocketFactory(HappyEyeballs.sslSocketFactory((SSLSocketFactory) SSLSocketFactory.getDefault(), clientOptions.getHappyEyeballsDelay()));
+        }
+      }
     } catch (Exception e) {
-      Log.d(NAME, "Error...", e);
+      tracer.e("create ssl connect error", e);
+      session.transition(ClientSession.State.CONNECTING, ClientSession.State.CREATED);
       promise.reject("error", "create ssl connect error", e);
       return;
     }
     //mqttConnectOptions.setAutomaticReconnect(true);
+    String[] serverUris = clientOptions.getServerUris();
+    if (serverUris.length > 1 && clientOptions.getProbeTimeout() > 0) {
+      ServerProbe.rank(serverUris, clientOptions.getProbeTimeout(), clientOptions.getProbeCacheMs(), new ServerProbe.Callback() {
+        @Override
+        public void onRanked(String[] rankedUris) {
+          if (tracer.isDebugEnabled()) {
+            tracer.d("connect servers " + Arrays.toString(rankedUris));
+          }
+          mqttConnectOptions.setServerURIs(rankedUris);
+          startConnect(session, generation, mqttConnectOptions, promise);
+        }
+      });
+      return;
+    }
+    if (serverUris.length > 1) {
+      mqttConnectOptions.setServerURIs(serverUris);
+    }
+    startConnect(session, generation, mqttConnectOptions, promise);
+  }
+
+  private static void startConnect(ClientSession session, int generation, MqttConnectOptions mqttConnectOptions, Promise promise) {
+    String clientId = session.getOptions().getClientId();
+    MqttAndroidClient client = session.getClient();
+    Tracer tracer = session.getTracer();
+    if (!session.isConnectAttempt(generation)) {
+      // disconnected, closed or connecting again while the servers were probed
+      promise.reject("error", "connect cancelled");
+      return;
+    }
     try {
       client.connect(mqttConnectOptions, null, new IMqttActionListener() {
         @Override
         public void onSuccess(IMqttToken asyncActionToken) {
-          Log.d(NAME, "connect onSuccess...");
+          tracer.i("connect onSuccess...");
+          session.connected();
           promise.resolve(clientId);
         }
 
         @Override
         public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
-          Log.e(NAME, "connect onFailure...", exception);
+          tracer.e("connect onFailure...", exception);
+          session.transition(ClientSession.State.CONNECTING, ClientSession.State.CREATED);
           promise.reject("error", exception == null ? "connect error" : exception.getMessage(), exception);
         }
       });
     } catch (MqttException e) {
-      Log.d(NAME, "Error...", e);
+      tracer.e("connect error", e);
+      session.transition(ClientSession.State.CONNECTING, ClientSession.State.CREATED);
       promise.reject("error", "connect error", e);
     }
   }
 
   public static void disconnect(String clientId, Promise promise) {
-    MqttAndroidClient client = clients.get(clientId);
-    if (client == null) {
-      Log.w(NAME, "client doesn't create");
+    ClientSession session = clients.get(clientId);
+    if (session == null) {
+      Tracer.DEFAULT.w("client doesn't create");
       promise.resolve(clientId);
-    } else {
-      try {
-        client.disconnect(null, new IMqttActionListener() {
-          @Override
-          public void onSuccess(IMqttToken asyncActionToken) {
-            Log.d(NAME, "disconnect onSuccess...");
-            promise.resolve(clientId);
-          }
-
-          @Override
-          public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
-            Log.e(NAME, "disconnect onFailure...");
-            promise.reject("error", exception == null ? "disconnect error" : exception.getMessage(), exception);
-          }
-        });
-      } catch (MqttException e) {
-        Log.e(NAME, "disconnect error...", e);
-        promise.reject("error", e == null ? "disconnect error" : e.getMessage(), e);
+      return;
+    }
+    Tracer tracer = session.getTracer();
+    session.getReconnectScheduler().stop();
+    // a connect in progress, including an automatic reconnect, is cancelled by disconnecting
+    if (!session.transition(ClientSession.State.CONNECTED, ClientSession.State.DISCONNECTING)
+      && !session.transition(ClientSession.State.CONNECTING, ClientSession.State.DISCONNECTING)) {
+      if (session.getState() == ClientSession.State.DISCONNECTING) {
+        promise.reject("error", "client is disconnecting");
+      } else {
+        // never connected or already disconnected
+        promise.resolve(clientId);
       }
+      return;
+    }
+    if (!session.hasConnected()) {
+      session.transition(ClientSession.State.DISCONNECTING, ClientSession.State.CREATED);
+      promise.resolve(clientId);
+      return;
+    }
+    MqttAndroidClient client = session.getClient();
+    try {
+      client.disconnect(null, new IMqttActionListener() {
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+          tracer.i("disconnect onSuccess...");
+          session.transition(ClientSession.State.DISCONNECTING, ClientSession.State.CREATED);
+          promise.resolve(clientId);
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+          tracer.e("disconnect onFailure...", exception);
+          session.transition(ClientSession.State.DISCONNECTING, client.isConnected() ? ClientSession.State.CONNECTED : ClientSession.State.CREATED);
+          promise.reject("error", exception == null ? "disconnect error" : exception.getMessage(), exception);
+        }
+      });
+    } catch (MqttException e) {
+      tracer.e("disconnect error...", e);
+      session.transition(ClientSession.State.DISCONNECTING, client.isConnected() ? ClientSession.State.CONNECTED : ClientSession.State.CREATED);
+      promise.reject("error", e == null ? "disconnect error" : e.getMessage(), e);
     }
   }
 
-  public static void subscribe(String clientId, String topic, int qos, Promise promise) {
-    MqttAndroidClient client = clients.get(clientId);
-    if (client == null) {
-      promise.reject("error", "client doesn't create");
+  public static void subscribe(String clientId, String topic, int qos, SubscriptionOptions subscriptionOptions, Promise promise) {
+    ClientSession session = getActiveSession(clientId, promise);
+    if (session == null) {
       return;
     }
-    Log.d(NAME, "subscribe " + topic + "/" + qos);
+    MqttAndroidClient client = session.getClient();
+    Tracer tracer = session.getTracer();
+    if (tracer.isDebugEnabled()) {
+      tracer.d("subscribe " + topic + "/" + qos);
+    }
+    // before subscribing, retained messages can arrive ahead of the SUBACK callback
+    session.setSubscriptionOptions(topic, subscriptionOptions);
     try {
       client.subscribe(topic, qos, null, new IMqttActionListener() {
         @Override
         public void onSuccess(IMqttToken asyncActionToken) {
-          Log.d(NAME, "subscribe onSuccess..." + asyncActionToken.toString());
+          if (tracer.isDebugEnabled()) {
+            tracer.d("subscribe onSuccess... " + topic);
+          }
           promise.resolve(topic);
         }
 
         @Override
         public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
-          Log.d(NAME, "subscribe onFailure..." + asyncActionToken.toString());
+          tracer.w("subscribe onFailure... " + topic, exception);
           promise.reject("error", exception == null ? "subscribe error" : exception.getMessage(), exception);
         }
       });
     } catch (MqttException e) {
-      Log.d(NAME, "subscribe error ...", e);
+      tracer.w("subscribe error ...", e);
       promise.reject("error", e == null ? "subscribe error" : e.getMessage(), e);
     }
   }
 
   public static void unsubscribe(String clientId, String topic, Promise promise) {
-    MqttAndroidClient client = clients.get(clientId);
-    if (client == null) {
-      promise.reject("error", "client doesn't create");
+    ClientSession session = getActiveSession(clientId, promise);
+    if (session == null) {
       return;
     }
+    MqttAndroidClient client = session.getClient();
+    Tracer tracer = session.getTracer();
     try {
       client.unsubscribe(topic, null, new IMqttActionListener() {
         @Override
         public void onSuccess(IMqttToken asyncActionToken) {
-          Log.d(NAME, "unsubscribe onSuccess..." + asyncActionToken.toString());
+          if (tracer.isDebugEnabled()) {
+            tracer.d("unsubscribe onSuccess... " + topic);
+          }
+          session.setSubscriptionOptions(topic, SubscriptionOptions.DEFAULT);
           promise.resolve(topic);
         }
 
         @Override
         public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
-          Log.d(NAME, "unsubscribe onFailure..." + asyncActionToken.toString());
+          tracer.w("unsubscribe onFailure... " + topic, exception);
           promise.reject("error", exception == null ? "subscribe error" : exception.getMessage(), exception);
         }
       });
     } catch (MqttException e) {
-      Log.d(NAME, "unsubscribe error ...", e);
+      tracer.w("unsubscribe error ...", e);
       promise.reject("error", e == null ? "unsubscribe error" : e.getMessage(), e);
     }
   }
 
+  public static void subscribeMany(String clientId, String[] topics, int[] qos, SubscriptionOptions[] subscriptionOptions, Promise promise) {
+    ClientSession session = getActiveSession(clientId, promise);
+    if (session == null) {
+      return;
+    }
+    Tracer tracer = session.getTracer();
+    if (tracer.isDebugEnabled()) {
+      tracer.d("subscribeMany " + topics.length);
+    }
+    for (int i = 0; i < topics.length; i++) {
+      session.setSubscriptionOptions(topics[i], subscriptionOptions[i]);
+    }
+    SubscriptionBatch.subscribe(session.getClient(), topics, qos, session.getOptions().getSubscribeChunkSize(), promise);
+  }
+
+  public static void unsubscribeMany(String clientId, String[] topics, Promise promise) {
+    ClientSession session = getActiveSession(clientId, promise);
+    if (session == null) {
+      return;
+    }
+    Tracer tracer = session.getTracer();
+    if (tracer.isDebugEnabled()) {
+      tracer.d("unsubscribeMany " + topics.length);
+    }
+    for (String topic : topics) {
+      session.setSubscriptionOptions(topic, SubscriptionOptions.DEFAULT);
+    }
+    SubscriptionBatch.unsubscribe(session.getClient(), topics, session.getOptions().getSubscribeChunkSize(), promise);
+  }
+
   public static void publish(String clientId, String topic, String base64Body, int qos, boolean retained, Promise promise) {
-    MqttAndroidClient client = clients.get(clientId);
-    if (client == null) {
-      promise.reject("error", "client doesn't create");
+    publish(clientId, topic, Base64.decode(base64Body, Base64.NO_WRAP), qos, retained, promise);
+  }
+
+  public static void publish(String clientId, String topic, byte[] body, int qos, boolean retained, Promise promise) {
+    ClientSession session = getActiveSession(clientId, promise);
+    if (session == null) {
+      return;
+    }
+    PayloadCodec codec = session.getOptions().getCompression();
+    byte[] payload = codec == null ? body : codec.encode(topic, body);
+    MqttAndroidClient client = session.getClient();
+    OfflineBuffer offlineBuffer = session.getOfflineBuffer();
+    if (offlineBuffer != null && session.getState() != ClientSession.State.CONNECTED && !offlineBuffer.reserve(client, payload.length)) {
+      promise.reject("error", "offline buffer is full");
       return;
     }
-    MqttMessage message = new MqttMessage(Base64.decode(base64Body, Base64.NO_WRAP));
+    ClientStats stats = session.getStats();
+    MqttMessage message = new MqttMessage(payload);
     message.setQos(qos);
     message.setRetained(retained);
+    Tracer tracer = session.getTracer();
+    long startedAt = stats.publishStarted();
     try {
       client.publish(topic, message, null, new IMqttActionListener() {
         @Override
         public void onSuccess(IMqttToken asyncActionToken) {
-          Log.d(NAME, "publish onSuccess..." + asyncActionToken.toString());
+          stats.publishCompleted(startedAt, payload.length);
+          if (tracer.sampleMessage()) {
+            tracer.d("publish onSuccess... " + topic);
+          }
           promise.resolve(topic);
         }
 
         @Override
         public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
-          Log.d(NAME, "publish onFailure..." + asyncActionToken.toString());
+          stats.publishFailed();
+          tracer.w("publish onFailure... " + topic, exception);
           promise.reject("error", exception == null ? "subscribe error" : exception.getMessage(), exception);
         }
       });
     } catch (MqttException e) {
-      Log.d(NAME, "publish error ...", e);
+      stats.publishFailed();
+      tracer.w("publish error ...", e);
       promise.reject("error", e == null ? "publish error" : e.getMessage(), e);
     }
   }
+
+  public static void request(String clientId, String topic, byte[] body, int qos, String replyTopic, long timeoutMs, Promise promise) {
+    ClientSession session = getActiveSession(clientId, promise);
+    if (session == null) {
+      return;
+    }
+    Tracer tracer = session.getTracer();
+    if (tracer.sampleMessage()) {
+      tracer.d("request " + topic + " reply:" + replyTopic);
+    }
+    session.getRpcClient().request(topic, body, qos, replyTopic, timeoutMs, promise);
+  }
+
+  public static void publishMany(String clientId, List<BatchPublisher.Request> requests, Promise promise) {
+    ClientSession session = getActiveSession(clientId, promise);
+    if (session == null) {
+      return;
+    }
+    Tracer tracer = session.getTracer();
+    if (tracer.isDebugEnabled()) {
+      tracer.d("publishMany " + requests.size());
+    }
+    PayloadCodec codec = session.getOptions().getCompression();
+    if (codec != null) {
+      for (BatchPublisher.Request request : requests) {
+        request.message.setPayload(codec.encode(request.topic, request.message.getPayload()));
+      }
+    }
+    new BatchPublisher(session.getClient(), session.getStats(), session.getInflightController(), requests, promise).start();
+  }
 }
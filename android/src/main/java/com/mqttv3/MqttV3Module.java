@@ -1,16 +1,21 @@
 package com.mqttv3;
 
-import android.util.Log;
+import android.util.Base64;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.module.annotations.ReactModule;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @ReactModule(name = MqttV3Module.NAME)
 public class MqttV3Module extends ReactContextBaseJavaModule {
   public static final String NAME = "MqttV3";
@@ -87,8 +92,7 @@ public class MqttV3Module extends ReactContextBaseJavaModule {
         qos = i;
       }
     }
-    Log.d(NAME, "subscribe " + topic + "/" + qos);
-    MqttV3Client.subscribe(clientId, topic, qos, promise);
+    MqttV3Client.subscribe(clientId, topic, qos, SubscriptionOptions.fromReadableMap(params), promise);
   }
 
   @ReactMethod
@@ -104,6 +108,59 @@ public class MqttV3Module extends ReactContextBaseJavaModule {
     MqttV3Client.unsubscribe(clientId, topic, promise);
   }
 
+  @ReactMethod
+  public void subscribeMany(final String clientId, final ReadableArray subscriptions, final Promise promise) {
+    if (clientId == null) {
+      promise.reject("clientId", "clientId is required.");
+      return;
+    }
+    if (subscriptions == null) {
+      promise.reject("subscriptions", "subscriptions is required.");
+      return;
+    }
+    String[] topics = new String[subscriptions.size()];
+    int[] qos = new int[subscriptions.size()];
+    SubscriptionOptions[] subscriptionOptions = new SubscriptionOptions[subscriptions.size()];
+    for (int i = 0; i < subscriptions.size(); i++) {
+      ReadableMap params = subscriptions.getMap(i);
+      topics[i] = params.hasKey("topic") ? params.getString("topic") : null;
+      if (topics[i] == null) {
+        promise.reject("topic", "topic is required.");
+        return;
+      }
+      qos[i] = 1;
+      if (params.hasKey("qos") && !params.isNull("qos")) {
+        int q = params.getInt("qos");
+        if (q >= 0 && q <= 2) {
+          qos[i] = q;
+        }
+      }
+      subscriptionOptions[i] = SubscriptionOptions.fromReadableMap(params);
+    }
+    MqttV3Client.subscribeMany(clientId, topics, qos, subscriptionOptions, promise);
+  }
+
+  @ReactMethod
+  public void unsubscribeMany(final String clientId, final ReadableArray topics, final Promise promise) {
+    if (clientId == null) {
+      promise.reject("clientId", "clientId is required.");
+      return;
+    }
+    if (topics == null) {
+      promise.reject("topics", "topics is required.");
+      return;
+    }
+    String[] filters = new String[topics.size()];
+    for (int i = 0; i < topics.size(); i++) {
+      filters[i] = topics.getString(i);
+      if (filters[i] == null) {
+        promise.reject("topic", "topic is required.");
+        return;
+      }
+    }
+    MqttV3Client.unsubscribeMany(clientId, filters, promise);
+  }
+
   @ReactMethod
   public void publish(final ReadableMap params, final Promise promise) {
     String clientId = params.getString("clientId");
@@ -135,15 +192,152 @@ public class MqttV3Module extends ReactContextBaseJavaModule {
     MqttV3Client.publish(clientId, topic, base64Body, qos, retained, promise);
   }
 
+  @ReactMethod
+  public void request(final ReadableMap params, final Promise promise) {
+    String clientId = params.getString("clientId");
+    if (clientId == null) {
+      promise.reject("clientId", "clientId is required.");
+      return;
+    }
+    String topic = params.getString("topic");
+    if (topic == null) {
+      promise.reject("topic", "topic is required.");
+      return;
+    }
+    String base64Body = params.getString("base64Body");
+    if (base64Body == null) {
+      promise.reject("base64Body", "base64Body is required.");
+      return;
+    }
+    String replyTopic = params.hasKey("replyTopic") ? params.getString("replyTopic") : null;
+    if (replyTopic == null) {
+      promise.reject("replyTopic", "replyTopic is required.");
+      return;
+    }
+    int qos = 1;
+    if (params.hasKey("qos") && !params.isNull("qos")) {
+      int i = params.getInt("qos");
+      if (i >= 0 && i <= 2) {
+        qos = i;
+      }
+    }
+    long timeoutMs = 10000;
+    if (params.hasKey("timeoutMs") && !params.isNull("timeoutMs") && params.getInt("timeoutMs") > 0) {
+      timeoutMs = params.getInt("timeoutMs");
+    }
+    MqttV3Client.request(clientId, topic, Base64.decode(base64Body, Base64.NO_WRAP), qos, replyTopic, timeoutMs, promise);
+  }
+
+  @ReactMethod
+  public void publishMany(final String clientId, final ReadableArray messages, final Promise promise) {
+    if (clientId == null) {
+      promise.reject("clientId", "clientId is required.");
+      return;
+    }
+    if (messages == null) {
+      promise.reject("messages", "messages is required.");
+      return;
+    }
+    List<BatchPublisher.Request> requests = new ArrayList<>(messages.size());
+    for (int i = 0; i < messages.size(); i++) {
+      ReadableMap params = messages.getMap(i);
+      String topic = params.hasKey("topic") ? params.getString("topic") : null;
+      if (topic == null) {
+        promise.reject("topic", "topic is required.");
+        return;
+      }
+      String base64Body = params.hasKey("base64Body") ? params.getString("base64Body") : null;
+      if (base64Body == null) {
+        promise.reject("base64Body", "base64Body is required.");
+        return;
+      }
+      int qos = 1;
+      if (params.hasKey("qos") && !params.isNull("qos")) {
+        int q = params.getInt("qos");
+        if (q >= 0 && q <= 2) {
+          qos = q;
+        }
+      }
+      boolean retained = params.hasKey("retained") && !params.isNull("retained") && params.getBoolean("retained");
+      requests.add(new BatchPublisher.Request(topic, Base64.decode(base64Body, Base64.NO_WRAP), qos, retained));
+    }
+    MqttV3Client.publishMany(clientId, requests, promise);
+  }
+
+  @ReactMethod
+  public void addMessageRoute(final String clientId, @Nullable final String filter, final int listenerId) {
+    if (clientId == null) {
+      return;
+    }
+    MqttV3Client.addMessageRoute(clientId, filter, listenerId);
+  }
+
+  @ReactMethod
+  public void removeMessageRoute(final String clientId, @Nullable final String filter, final int listenerId) {
+    if (clientId == null) {
+      return;
+    }
+    MqttV3Client.removeMessageRoute(clientId, filter, listenerId);
+  }
+
+  @ReactMethod
+  public void getInboundStats(final String clientId, Promise promise) {
+    if (clientId == null) {
+      promise.reject("clientId", "clientId is required.");
+      return;
+    }
+    MqttV3Client.getInboundStats(clientId, promise);
+  }
+
+  @ReactMethod
+  public void getStats(final String clientId, Promise promise) {
+    if (clientId == null) {
+      promise.reject("clientId", "clientId is required.");
+      return;
+    }
+    MqttV3Client.getStats(clientId, promise);
+  }
+
+  @ReactMethod
+  public void getSnapshot(final String clientId, final String filter, @Nullable final ReadableMap options, Promise promise) {
+    if (clientId == null) {
+      promise.reject("clientId", "clientId is required.");
+      return;
+    }
+    if (filter == null) {
+      promise.reject("filter", "filter is required.");
+      return;
+    }
+    boolean json = options != null && SubscriptionOptions.fromReadableMap(options).isJson();
+    MqttV3Client.getSnapshot(clientId, filter, json, promise);
+  }
+
+  @ReactMethod
+  public void getBufferedMessageCount(final String clientId, Promise promise) {
+    if (clientId == null) {
+      promise.reject("clientId", "clientId is required.");
+      return;
+    }
+    MqttV3Client.getBufferedMessageCount(clientId, promise);
+  }
+
+  @ReactMethod(isBlockingSynchronousMethod = true)
+  public boolean installBinary() {
+    return BinaryBridge.install(getReactApplicationContext());
+  }
 
   // Required for rn built in EventEmitter Calls.
   @ReactMethod
   public void addListener(String eventName) {
-    Log.d(NAME, "addListener " + eventName);
+    if (Tracer.DEFAULT.isDebugEnabled()) {
+      Tracer.DEFAULT.d("addListener " + eventName);
+    }
   }
 
   @ReactMethod
   public void removeListeners(Integer count) {
-    Log.d(NAME, "removeListeners " + count);
+    if (Tracer.DEFAULT.isDebugEnabled()) {
+      Tracer.DEFAULT.d("removeListeners " + count);
+    }
   }
 }
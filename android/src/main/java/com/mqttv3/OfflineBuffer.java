@@ -0,0 +1,152 @@
+package com.mqttv3;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import org.eclipse.paho.android.service.MqttAndroidClient;
+import org.eclipse.paho.client.mqttv3.DisconnectedBufferOptions;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paho's disconnected buffer for one client: publishes made while the connection is lost are kept
+ * and sent back to back once it is restored. Adds the byte limit paho lacks and reports the drain
+ * progress to JS.
+ */
+public class OfflineBuffer {
+  private static final long DRAIN_POLL_MS = 100;
+
+  private final ClientSession session;
+  private final String eventName;
+  private final ClientOptions.OfflineBufferOptions options;
+  // payload sizes of the buffered messages oldest first, summed up in buffered
+  private final ArrayDeque<Integer> sizes = new ArrayDeque<>();
+  private boolean applied;
+  private ScheduledFuture<?> drainPoll;
+  private int drainTotal;
+  private long buffered;
+
+  public OfflineBuffer(ClientSession session, String clientId, ClientOptions.OfflineBufferOptions options) {
+    this.session = session;
+    this.eventName = MqttV3Client.BUFFER_DRAIN_PREFIX + clientId;
+    this.options = options;
+  }
+
+  /**
+   * The service only knows the client once it has connected, so the options are applied then.
+   */
+  public synchronized void apply(MqttAndroidClient client) {
+    if (applied) {
+      return;
+    }
+    DisconnectedBufferOptions bufferOptions = new DisconnectedBufferOptions();
+    bufferOptions.setBufferEnabled(true);
+    bufferOptions.setBufferSize(options.getMaxMessages());
+    bufferOptions.setDeleteOldestMessages(options.isDeleteOldest());
+    bufferOptions.setPersistBuffer(options.isPersist());
+    client.setBufferOpts(bufferOptions);
+    applied = true;
+  }
+
+  /**
+   * Makes room for a publish of {@code bytes} while offline.
+   *
+   * @return false when the byte limit is reached and the oldest messages may not be deleted
+   */
+  public synchronized boolean reserve(MqttAndroidClient client, int bytes) {
+    if (!applied || options.getMaxBytes() <= 0) {
+      return true;
+    }
+    int count = client.getBufferedMessageCount();
+    trimTo(count);
+    if (sizes.size() < count) {
+      // restored from the persisted buffer, sized once
+      sizes.clear();
+      buffered = 0;
+      for (int i = 0; i < count; i++) {
+        MqttMessage message = client.getBufferedMessage(i);
+        int size = message == null ? 0 : message.getPayload().length;
+        sizes.add(size);
+        buffered += size;
+      }
+    }
+    while (buffered + bytes > options.getMaxBytes() && !sizes.isEmpty()) {
+      if (!options.isDeleteOldest()) {
+        return false;
+      }
+      client.deleteBufferedMessage(0);
+      buffered -= sizes.poll();
+    }
+    if (buffered + bytes > options.getMaxBytes()) {
+      return false;
+    }
+    sizes.add(bytes);
+    buffered += bytes;
+    return true;
+  }
+
+  /**
+   * Paho sends and deletes from the head, so the messages gone since the last look are the oldest.
+   */
+  private void trimTo(int count) {
+    while (sizes.size() > count) {
+      buffered -= sizes.poll();
+    }
+  }
+
+  public int getCount(MqttAndroidClient client) {
+    synchronized (this) {
+      if (!applied) {
+        return 0;
+      }
+    }
+    return client.getBufferedMessageCount();
+  }
+
+  /**
+   * Emits the number of messages left every {@link #DRAIN_POLL_MS} until the buffer is empty.
+   */
+  public synchronized void startDrain(MqttAndroidClient client) {
+    int count = getCount(client);
+    if (count == 0 || drainPoll != null) {
+      return;
+    }
+    drainTotal = count;
+    drainPoll = Schedulers.shared().scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        int remaining;
+        try {
+          remaining = client.isConnected() ? client.getBufferedMessageCount() : -1;
+        } catch (RuntimeException e) {
+          remaining = -1;
+        }
+        synchronized (OfflineBuffer.this) {
+          if (remaining >= 0) {
+            trimTo(remaining);
+          }
+          if (remaining < 0 || remaining == 0) {
+            // drained, or the connection is gone again and the next reconnect starts over
+            stopDrain();
+          }
+          if (remaining >= 0) {
+            WritableMap event = Arguments.createMap();
+            event.putInt("remaining", remaining);
+            event.putInt("total", drainTotal);
+            session.emit(eventName, event);
+          }
+        }
+      }
+    }, DRAIN_POLL_MS, DRAIN_POLL_MS, TimeUnit.MILLISECONDS);
+  }
+
+  public synchronized void stopDrain() {
+    if (drainPoll != null) {
+      drainPoll.cancel(false);
+      drainPoll = null;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+package com.mqttv3;
+
+import android.util.Base64;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate compression of payloads on topics matching a configured filter, with a preset dictionary
+ * per filter. Compressed payloads start with {@link #DEFLATE} and the dictionary id, payloads that
+ * would not shrink are sent as {@link #RAW} followed by the original bytes, so the receiving side
+ * never has to guess. Payloads on other topics are left untouched.
+ */
+public class PayloadCodec {
+  private static final byte RAW = 0x00;
+  private static final byte DEFLATE = 0x01;
+
+  private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+    @Override
+    protected Deflater initialValue() {
+      return new Deflater();
+    }
+  };
+  private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+    @Override
+    protected Inflater initialValue() {
+      return new Inflater();
+    }
+  };
+  private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[8192];
+    }
+  };
+
+  private static final ThreadLocal<ArrayList<Integer>> matches = new ThreadLocal<ArrayList<Integer>>() {
+    @Override
+    protected ArrayList<Integer> initialValue() {
+      return new ArrayList<>();
+    }
+  };
+
+  // the declaration index of each filter, the trie yields matches in its own order
+  private final TopicTrie<Integer> filters = new TopicTrie<>();
+  private final List<Integer> dictionaryIds = new ArrayList<>();
+  private final Map<Integer, byte[]> dictionaries = new HashMap<>();
+
+  /**
+   * @param options {@code {dictionaries: {[id]: base64}, topics: [{filter, dictionaryId}]}}
+   */
+  @Nullable
+  public static PayloadCodec fromReadableMap(ReadableMap options) {
+    PayloadCodec codec = new PayloadCodec();
+    if (options.hasKey("dictionaries") && !options.isNull("dictionaries")) {
+      ReadableMap dictionaries = options.getMap("dictionaries");
+      ReadableMapKeySetIterator iterator = dictionaries.keySetIterator();
+      while (iterator.hasNextKey()) {
+        String id = iterator.nextKey();
+        codec.addDictionary(Integer.parseInt(id), Base64.decode(dictionaries.getString(id), Base64.NO_WRAP));
+      }
+    }
+    if (!options.hasKey("topics") || options.isNull("topics")) {
+      return null;
+    }
+    ReadableArray topics = options.getArray("topics");
+    for (int i = 0; i < topics.size(); i++) {
+      ReadableMap topic = topics.getMap(i);
+      codec.addFilter(topic.getString("filter"), topic.hasKey("dictionaryId") ? topic.getInt("dictionaryId") : 0);
+    }
+    return codec.filters.isEmpty() ? null : codec;
+  }
+
+  public void addDictionary(int id, byte[] dictionary) {
+    dictionaries.put(id & 0xff, dictionary);
+  }
+
+  /**
+   * Compresses payloads on topics matching {@code filter}, unless a filter added before matches too.
+   *
+   * @param dictionaryId a dictionary added with {@link #addDictionary}, plain deflate without one
+   */
+  public void addFilter(String filter, int dictionaryId) {
+    filters.add(filter, dictionaryIds.size());
+    dictionaryIds.add(dictionaryId & 0xff);
+  }
+
+  /**
+   * The dictionary of the first filter in declaration order matching the topic.
+   */
+  @Nullable
+  private Integer dictionaryIdOf(String topic) {
+    ArrayList<Integer> indexes = matches.get();
+    filters.match(topic, indexes);
+    if (indexes.isEmpty()) {
+      return null;
+    }
+    int first = Integer.MAX_VALUE;
+    for (int i = 0; i < indexes.size(); i++) {
+      first = Math.min(first, indexes.get(i));
+    }
+    indexes.clear();
+    return dictionaryIds.get(first);
+  }
+
+  public byte[] encode(String topic, byte[] payload) {
+    // an empty payload clears a retained message, it must reach the broker empty
+    if (payload.length == 0) {
+      return payload;
+    }
+    Integer dictionaryId = dictionaryIdOf(topic);
+    if (dictionaryId == null) {
+      return payload;
+    }
+    Deflater deflater = deflaters.get();
+    deflater.reset();
+    byte[] dictionary = dictionaries.get(dictionaryId);
+    if (dictionary != null) {
+      deflater.setDictionary(dictionary);
+    }
+    deflater.setInput(payload);
+    deflater.finish();
+    ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + 16);
+    out.write(DEFLATE);
+    out.write(dictionaryId);
+    byte[] buffer = buffers.get();
+    while (!deflater.finished()) {
+      out.write(buffer, 0, deflater.deflate(buffer));
+      if (out.size() > payload.length) {
+        break;
+      }
+    }
+    if (!deflater.finished() || out.size() > payload.length) {
+      byte[] raw = new byte[payload.length + 1];
+      raw[0] = RAW;
+      System.arraycopy(payload, 0, raw, 1, payload.length);
+      return raw;
+    }
+    return out.toByteArray();
+  }
+
+  public byte[] decode(String topic, byte[] payload) throws DataFormatException {
+    if (payload.length == 0 || dictionaryIdOf(topic) == null) {
+      return payload;
+    }
+    if (payload[0] == RAW) {
+      byte[] raw = new byte[payload.length - 1];
+      System.arraycopy(payload, 1, raw, 0, raw.length);
+      return raw;
+    }
+    if (payload[0] != DEFLATE || payload.length < 2) {
+      // not produced by a compressing client, deliver as is
+      return payload;
+    }
+    Inflater inflater = inflaters.get();
+    inflater.reset();
+    inflater.setInput(payload, 2, payload.length - 2);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length * 3);
+    byte[] buffer = buffers.get();
+    while (!inflater.finished()) {
+      int n = inflater.inflate(buffer);
+      if (n == 0) {
+        if (inflater.needsDictionary()) {
+          byte[] dictionary = dictionaries.get(payload[1] & 0xff);
+          if (dictionary == null) {
+            throw new DataFormatException("unknown dictionary " + (payload[1] & 0xff));
+          }
+          inflater.setDictionary(dictionary);
+        } else if (inflater.needsInput()) {
+          throw new DataFormatException("truncated payload");
+        } else if (!inflater.finished()) {
+          // would spin forever
+          throw new DataFormatException("inflater made no progress");
+        }
+      }
+      out.write(buffer, 0, n);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,196 @@
+package com.mqttv3;
+
+import androidx.annotation.Nullable;
+
+import org.eclipse.paho.android.service.MqttAndroidClient;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reconnects after a lost connection in place of paho's automatic reconnect, whose fixed doubling
+ * makes every client of a restarted broker come back at the same instants. Each delay is drawn
+ * uniformly between 0 and the exponential backoff capped at the maximum delay (full jitter).
+ * After a number of consecutive failures the circuit opens and attempts pause for a cooldown,
+ * then a single attempt decides whether to close it again.
+ */
+public class ReconnectScheduler {
+  public static final String WAITING = "waiting";
+  public static final String CONNECTING = "connecting";
+  public static final String CONNECTED = "connected";
+  public static final String FAILED = "failed";
+  public static final String OPEN = "open";
+  public static final String HALF_OPEN = "halfOpen";
+  public static final String STOPPED = "stopped";
+
+  public interface Listener {
+    /**
+     * @param delayMs until the next attempt, only for {@link #WAITING} and {@link #OPEN}
+     */
+    void onStateChange(String state, int attempt, long delayMs, @Nullable String error);
+  }
+
+  private final MqttAndroidClient client;
+  private final Listener listener;
+  private final Random random = new Random();
+  private final Runnable attemptTask = new Runnable() {
+    @Override
+    public void run() {
+      attempt();
+    }
+  };
+
+  @Nullable
+  private MqttConnectOptions connectOptions;
+  private long initialDelayMs = 1000;
+  private long maxDelayMs = 128000;
+  private int breakerFailures;
+  private long breakerCooldownMs = 60000;
+
+  private boolean active;
+  private boolean halfOpen;
+  private int attempt;
+  private int failures;
+  // tells callbacks of an attempt apart from those of attempts cancelled by stop
+  private int generation;
+  private ScheduledFuture<?> scheduledAttempt;
+
+  public ReconnectScheduler(MqttAndroidClient client, Listener listener) {
+    this.client = client;
+    this.listener = listener;
+  }
+
+  /**
+   * Takes the options of a connect, attempts reuse them, null disables reconnecting.
+   */
+  public synchronized void configure(@Nullable MqttConnectOptions connectOptions, ClientOptions clientOptions) {
+    this.connectOptions = connectOptions;
+    this.initialDelayMs = clientOptions.getReconnectPeriod();
+    this.maxDelayMs = Math.max(clientOptions.getMaxReconnectDelay(), initialDelayMs);
+    this.breakerFailures = clientOptions.getBreakerFailures();
+    this.breakerCooldownMs = clientOptions.getBreakerCooldown();
+  }
+
+  public synchronized boolean isEnabled() {
+    return connectOptions != null;
+  }
+
+  /**
+   * Starts reconnecting, unless already doing so.
+   */
+  public synchronized void connectionLost() {
+    if (connectOptions == null || active) {
+      return;
+    }
+    active = true;
+    halfOpen = false;
+    attempt = 0;
+    failures = 0;
+    generation++;
+    schedule(null);
+  }
+
+  private void schedule(@Nullable String error) {
+    if (breakerFailures > 0 && failures >= breakerFailures) {
+      halfOpen = true;
+      scheduledAttempt = Schedulers.shared().schedule(attemptTask, breakerCooldownMs, TimeUnit.MILLISECONDS);
+      listener.onStateChange(OPEN, attempt, breakerCooldownMs, error);
+      return;
+    }
+    long cap = Math.min(maxDelayMs, initialDelayMs << Math.min(attempt, 20));
+    long delayMs = (long) (random.nextDouble() * cap);
+    scheduledAttempt = Schedulers.shared().schedule(attemptTask, delayMs, TimeUnit.MILLISECONDS);
+    listener.onStateChange(WAITING, attempt + 1, delayMs, error);
+  }
+
+  private synchronized void attempt() {
+    scheduledAttempt = null;
+    if (!active) {
+      return;
+    }
+    attempt++;
+    listener.onStateChange(halfOpen ? HALF_OPEN : CONNECTING, attempt, 0, null);
+    final int current = generation;
+    try {
+      client.connect(connectOptions, null, new IMqttActionListener() {
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+          succeeded(current);
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+          failed(current, exception);
+        }
+      });
+    } catch (MqttException e) {
+      failed(current, e);
+    }
+  }
+
+  private synchronized void succeeded(int attemptGeneration) {
+    if (attemptGeneration != generation) {
+      // stopped while connecting, e.g. disconnect or close
+      try {
+        client.disconnect();
+      } catch (Exception ignored) {
+        // the client may already be closed
+      }
+      return;
+    }
+    connected();
+  }
+
+  /**
+   * The connection is back, by an attempt or any other connect such as one started from JS. The
+   * service's own reconnect on network changes is turned off while the scheduler is enabled.
+   */
+  public synchronized void connected() {
+    if (!active) {
+      return;
+    }
+    active = false;
+    if (scheduledAttempt != null) {
+      scheduledAttempt.cancel(false);
+      scheduledAttempt = null;
+    }
+    listener.onStateChange(CONNECTED, attempt, 0, null);
+  }
+
+  private synchronized void failed(int attemptGeneration, Throwable exception) {
+    if (attemptGeneration != generation || !active) {
+      return;
+    }
+    if (exception instanceof MqttException && ((MqttException) exception).getReasonCode() == MqttException.REASON_CODE_CONNECT_IN_PROGRESS) {
+      // another connect is running, its connectComplete ends reconnecting, otherwise the attempt
+      // is taken again without counting it
+      attempt--;
+      schedule(null);
+      return;
+    }
+    failures++;
+    String error = exception == null || exception.getMessage() == null ? "connect error" : exception.getMessage();
+    listener.onStateChange(FAILED, attempt, 0, error);
+    schedule(error);
+  }
+
+  /**
+   * Cancels reconnecting, e.g. on disconnect and close.
+   */
+  public synchronized void stop() {
+    generation++;
+    if (scheduledAttempt != null) {
+      scheduledAttempt.cancel(false);
+      scheduledAttempt = null;
+    }
+    if (active) {
+      active = false;
+      listener.onStateChange(STOPPED, attempt, 0, null);
+    }
+  }
+}
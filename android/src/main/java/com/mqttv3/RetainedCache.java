@@ -0,0 +1,80 @@
+package com.mqttv3;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The last message of every concrete topic a client received, bounded by the number of topics and
+ * evicting the least recently updated one, so a screen can render from memory instead of waiting
+ * for the broker to resend retained messages one event at a time.
+ */
+public class RetainedCache {
+  private static class Entry {
+    final byte[] payload;
+    final int qos;
+    final boolean retained;
+
+    Entry(byte[] payload, int qos, boolean retained) {
+      this.payload = payload;
+      this.qos = qos;
+      this.retained = retained;
+    }
+  }
+
+  private final Map<String, Entry> entries;
+
+  public RetainedCache(final int maxEntries) {
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  public synchronized void put(String topic, byte[] payload, int qos, boolean retained) {
+    if (retained && payload.length == 0) {
+      // an empty retained message clears the retained value of the topic
+      entries.remove(topic);
+    } else {
+      entries.put(topic, new Entry(payload, qos, retained));
+    }
+  }
+
+  /**
+   * The cached messages whose topic matches the filter, payloads as base64 or, with {@code json},
+   * parsed like a subscription with that payload format.
+   */
+  public WritableArray snapshot(String filter, boolean json) {
+    WritableArray messages = Arguments.createArray();
+    Base64Encoder encoder = new Base64Encoder();
+    synchronized (this) {
+      for (Map.Entry<String, Entry> cached : entries.entrySet()) {
+        String topic = cached.getKey();
+        if (!TopicTrie.matches(filter, topic)) {
+          continue;
+        }
+        Entry entry = cached.getValue();
+        WritableMap message = Arguments.createMap();
+        message.putString("topic", topic);
+        if (json && JsonPayloads.put(message, "payload", "payloadError", entry.payload)) {
+          message.putString("base64Message", "");
+        } else {
+          message.putString("base64Message", encoder.encode(entry.payload));
+        }
+        message.putInt("qos", entry.qos);
+        message.putBoolean("retained", entry.retained);
+        messages.pushMap(message);
+      }
+    }
+    return messages;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+}
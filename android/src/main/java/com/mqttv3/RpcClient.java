@@ -0,0 +1,224 @@
+package com.mqttv3;
+
+import android.util.Base64;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
+
+import org.eclipse.paho.android.service.MqttAndroidClient;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request / response over MQTT 3.1.1, which has no correlation property: a request is published to
+ * {@code <topic>/<correlationId>} and the reply is expected on {@code <replyTopic>/<correlationId>}.
+ * Each reply topic is subscribed once per client as {@code <replyTopic>/+}, and replies resolve
+ * their request straight from messageArrived without reaching JS listeners.
+ */
+public class RpcClient {
+  private static final long TICK_MS = 10;
+  private static final int WHEEL_SIZE = 512;
+
+  private static class Request {
+    final String correlationId;
+    final String topic;
+    final MqttMessage message;
+    final Promise promise;
+    TimerWheel.Timeout timeout;
+
+    Request(String correlationId, String topic, MqttMessage message, Promise promise) {
+      this.correlationId = correlationId;
+      this.topic = topic;
+      this.message = message;
+      this.promise = promise;
+    }
+  }
+
+  private final MqttAndroidClient client;
+  private final Tracer tracer;
+  private final int qos;
+  @Nullable
+  private final PayloadCodec codec;
+  private final String idPrefix;
+  private final AtomicLong nextId = new AtomicLong();
+  private final ConcurrentHashMap<String, Request> requests = new ConcurrentHashMap<>();
+  // reply topic to the requests waiting for its subscription, an empty list once subscribed
+  private final Map<String, List<Request>> replyTopics = new HashMap<>();
+  private final TimerWheel timeouts = new TimerWheel(TICK_MS, WHEEL_SIZE);
+
+  public RpcClient(MqttAndroidClient client, Tracer tracer, int qos, @Nullable PayloadCodec codec) {
+    this.client = client;
+    this.tracer = tracer;
+    this.qos = qos;
+    this.codec = codec;
+    // random per process, replies meant for an earlier run are never taken for ours
+    this.idPrefix = Long.toHexString(new SecureRandom().nextLong() >>> 16) + "-";
+  }
+
+  public void request(String topic, byte[] payload, int requestQos, final String replyTopic, long timeoutMs, Promise promise) {
+    String correlationId = idPrefix + Long.toHexString(nextId.incrementAndGet());
+    String requestTopic = topic + "/" + correlationId;
+    // compressed for the topic it is sent to, the responder decodes by that topic
+    MqttMessage message = new MqttMessage(codec == null ? payload : codec.encode(requestTopic, payload));
+    message.setQos(requestQos);
+    final Request request = new Request(correlationId, requestTopic, message, promise);
+    requests.put(correlationId, request);
+    request.timeout = timeouts.schedule(new Runnable() {
+      @Override
+      public void run() {
+        if (requests.remove(request.correlationId, request)) {
+          request.promise.reject("error", "request timeout");
+        }
+      }
+    }, timeoutMs);
+    boolean subscribe;
+    boolean queued;
+    synchronized (replyTopics) {
+      List<Request> waiting = replyTopics.get(replyTopic);
+      subscribe = waiting == null;
+      if (subscribe) {
+        waiting = new ArrayList<>();
+        replyTopics.put(replyTopic, waiting);
+      }
+      queued = subscribe || !waiting.isEmpty();
+      if (queued) {
+        waiting.add(request);
+      }
+    }
+    if (!queued) {
+      publish(request);
+    } else if (subscribe) {
+      subscribe(replyTopic);
+    }
+  }
+
+  private void subscribe(final String replyTopic) {
+    try {
+      client.subscribe(replyTopic + "/+", qos, null, new IMqttActionListener() {
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+          List<Request> waiting;
+          synchronized (replyTopics) {
+            waiting = replyTopics.put(replyTopic, Collections.<Request>emptyList());
+          }
+          if (waiting != null) {
+            for (Request request : waiting) {
+              publish(request);
+            }
+          }
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+          subscribeFailed(replyTopic, exception);
+        }
+      });
+    } catch (MqttException e) {
+      subscribeFailed(replyTopic, e);
+    }
+  }
+
+  private void subscribeFailed(String replyTopic, Throwable exception) {
+    tracer.w("subscribe reply topic error " + replyTopic, exception);
+    List<Request> waiting;
+    synchronized (replyTopics) {
+      waiting = replyTopics.remove(replyTopic);
+    }
+    if (waiting != null) {
+      for (Request request : waiting) {
+        fail(request, exception);
+      }
+    }
+  }
+
+  private void publish(final Request request) {
+    if (requests.get(request.correlationId) != request) {
+      // timed out while waiting for the reply subscription
+      return;
+    }
+    try {
+      client.publish(request.topic, request.message, null, new IMqttActionListener() {
+        @Override
+        public void onSuccess(IMqttToken asyncActionToken) {
+        }
+
+        @Override
+        public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+          fail(request, exception);
+        }
+      });
+    } catch (MqttException e) {
+      fail(request, e);
+    }
+  }
+
+  private void fail(Request request, Throwable exception) {
+    if (requests.remove(request.correlationId, request)) {
+      request.timeout.cancel();
+      request.promise.reject("error", exception == null || exception.getMessage() == null ? "request error" : exception.getMessage(), exception);
+    }
+  }
+
+  /**
+   * Resolves the request a reply belongs to.
+   *
+   * @return whether the message was a reply to a pending request
+   */
+  public boolean messageArrived(String topic, byte[] payload) {
+    if (requests.isEmpty()) {
+      return false;
+    }
+    int slash = topic.lastIndexOf('/');
+    if (slash < 0 || !topic.startsWith(idPrefix, slash + 1)) {
+      return false;
+    }
+    Request request = requests.remove(topic.substring(slash + 1));
+    if (request == null) {
+      return false;
+    }
+    request.timeout.cancel();
+    WritableMap reply = Arguments.createMap();
+    reply.putString("topic", topic);
+    reply.putString("base64Message", Base64.encodeToString(payload, Base64.NO_WRAP));
+    request.promise.resolve(reply);
+    return true;
+  }
+
+  /**
+   * A new session may have lost the reply subscriptions, the next request subscribes again.
+   */
+  public void connectionReset() {
+    synchronized (replyTopics) {
+      Iterator<List<Request>> iterator = replyTopics.values().iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next().isEmpty()) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  public void close() {
+    timeouts.close();
+    for (Request request : requests.values()) {
+      if (requests.remove(request.correlationId, request)) {
+        request.promise.reject("error", "client is closed");
+      }
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package com.mqttv3;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executors shared by every client of the process.
+ */
+public final class Schedulers {
+  private static final ScheduledExecutorService shared = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "MqttV3-scheduler");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private static final ScheduledExecutorService disk = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "MqttV3-disk");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private Schedulers() {
+  }
+
+  /**
+   * One daemon thread running the timers of all clients: batch flushes, conflation, request
+   * timeouts, offline drains and reconnect attempts. Tasks run one after another, so they must be
+   * short and must never block or do I/O, a task waiting on a lock or the disk delays everything
+   * scheduled behind it.
+   */
+  public static ScheduledExecutorService shared() {
+    return shared;
+  }
+
+  /**
+   * One daemon thread for blocking disk work such as forcing and compacting journals, kept apart
+   * so a slow flash write never delays the timers of {@link #shared()}.
+   */
+  public static ScheduledExecutorService disk() {
+    return disk;
+  }
+}
@@ -0,0 +1,214 @@
+package com.mqttv3;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Orders broker URIs by the time a TCP connect to each takes, probing all of them in parallel, so
+ * paho tries the fastest reachable broker first. Rankings are cached per list of URIs.
+ */
+public class ServerProbe {
+  public interface Callback {
+    void onRanked(String[] serverUris);
+  }
+
+  // connects time out after the probe timeout, a few threads are enough for any list of brokers
+  private static final int PROBE_THREADS = 4;
+  private static final ThreadPoolExecutor probePool = new ThreadPoolExecutor(PROBE_THREADS, PROBE_THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "MqttV3-probe");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  static {
+    probePool.allowCoreThreadTimeOut(true);
+  }
+
+  private static class Ranking {
+    final String[] serverUris;
+    final long expiresAt;
+
+    Ranking(String[] serverUris, long expiresAt) {
+      this.serverUris = serverUris;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private static final ConcurrentHashMap<List<String>, Ranking> rankings = new ConcurrentHashMap<>();
+
+  /**
+   * Calls back with the URIs fastest first and unreachable ones last in their given order, on the
+   * calling thread when a ranking is cached and on a probe thread otherwise.
+   */
+  public static void rank(final String[] serverUris, final int timeoutMs, final long cacheMs, final Callback callback) {
+    // a copy, the caller may reuse its array
+    final List<String> key = Arrays.asList(serverUris.clone());
+    Ranking cached = rankings.get(key);
+    if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+      callback.onRanked(cached.serverUris);
+      return;
+    }
+    new Probe(key, timeoutMs, cacheMs, callback).start();
+  }
+
+  /**
+   * One round of connects, finished by the last connect or the timeout, whichever comes first. No
+   * thread waits for the others, so a round never holds a pool thread its own connects need.
+   */
+  private static class Probe implements Runnable {
+    private final List<String> serverUris;
+    private final int timeoutMs;
+    private final long cacheMs;
+    private final Callback callback;
+    private final long[] rtts;
+    private final AtomicInteger remaining;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private ScheduledFuture<?> timeout;
+
+    Probe(List<String> serverUris, int timeoutMs, long cacheMs, Callback callback) {
+      this.serverUris = serverUris;
+      this.timeoutMs = timeoutMs;
+      this.cacheMs = cacheMs;
+      this.callback = callback;
+      this.rtts = new long[serverUris.size()];
+      this.remaining = new AtomicInteger(serverUris.size());
+      Arrays.fill(rtts, Long.MAX_VALUE);
+    }
+
+    void start() {
+      for (int i = 0; i < rtts.length; i++) {
+        final int index = i;
+        probePool.execute(new Runnable() {
+          @Override
+          public void run() {
+            connect(index);
+          }
+        });
+      }
+      synchronized (this) {
+        if (!finished.get()) {
+          // the ranking itself is handed to a probe thread, the shared scheduler must not call out
+          timeout = Schedulers.shared().schedule(new Runnable() {
+            @Override
+            public void run() {
+              probePool.execute(Probe.this);
+            }
+          }, timeoutMs, TimeUnit.MILLISECONDS);
+        }
+      }
+    }
+
+    private void connect(int index) {
+      // queued behind other rounds past the timeout, the result would not be used
+      if (!finished.get()) {
+        String serverUri = serverUris.get(index);
+        try {
+          long rtt = connectTime(serverUri, timeoutMs);
+          synchronized (rtts) {
+            rtts[index] = rtt;
+          }
+        } catch (IOException | IllegalArgumentException e) {
+          Tracer.DEFAULT.w("probe " + serverUri + " error", e);
+        }
+      }
+      if (remaining.decrementAndGet() == 0) {
+        run();
+      }
+    }
+
+    @Override
+    public void run() {
+      if (!finished.compareAndSet(false, true)) {
+        return;
+      }
+      synchronized (this) {
+        if (timeout != null) {
+          timeout.cancel(false);
+        }
+      }
+      final long[] measured;
+      synchronized (rtts) {
+        measured = rtts.clone();
+      }
+      String[] ranked = order(serverUris, measured);
+      if (ranked != null) {
+        rankings.put(serverUris, new Ranking(ranked, System.currentTimeMillis() + cacheMs));
+      }
+      callback.onRanked(ranked == null ? serverUris.toArray(new String[0]) : ranked);
+    }
+  }
+
+  /**
+   * @return the ranked URIs, null when none was reachable
+   */
+  private static String[] order(List<String> serverUris, final long[] measured) {
+    List<Integer> order = new ArrayList<>(measured.length);
+    boolean reachable = false;
+    for (int i = 0; i < measured.length; i++) {
+      order.add(i);
+      reachable |= measured[i] != Long.MAX_VALUE;
+    }
+    if (!reachable) {
+      return null;
+    }
+    // stable, ties and unreachable URIs keep the configured order
+    Collections.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return Long.compare(measured[a], measured[b]);
+      }
+    });
+    String[] ranked = new String[measured.length];
+    for (int i = 0; i < ranked.length; i++) {
+      ranked[i] = serverUris.get(order.get(i));
+    }
+    if (Tracer.DEFAULT.isDebugEnabled()) {
+      Tracer.DEFAULT.d("probe ranked " + Arrays.toString(ranked) + " rtt " + Arrays.toString(measured));
+    }
+    return ranked;
+  }
+
+  private static long connectTime(String serverUri, int timeoutMs) throws IOException {
+    URI uri = URI.create(serverUri);
+    int port = uri.getPort() > 0 ? uri.getPort() : defaultPort(uri.getScheme());
+    long start = System.nanoTime();
+    Socket socket = new Socket();
+    try {
+      socket.connect(new InetSocketAddress(uri.getHost(), port), timeoutMs);
+      return System.nanoTime() - start;
+    } finally {
+      socket.close();
+    }
+  }
+
+  private static int defaultPort(String scheme) {
+    switch (scheme) {
+      case "ssl":
+        return 8883;
+      case "ws":
+        return 80;
+      case "wss":
+        return 443;
+      default:
+        return 1883;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package com.mqttv3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * FIFO of inbound messages on disk, used by {@link InboundQueue} once memory is full. Not thread
+ * safe, the queue guards it with its own lock.
+ */
+public class SpillFile {
+  private final File file;
+  private RandomAccessFile raf;
+  private long readPosition;
+  private long writePosition;
+  private int count;
+
+  public SpillFile(File file) {
+    this.file = file;
+  }
+
+  public void write(InboundMessage message) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(message.getPayload().length + message.getTopic().length() + 32);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeUTF(message.getTopic());
+    out.writeByte(message.getQos());
+    out.writeBoolean(message.isRetained());
+    out.writeLong(message.getArrivedAt());
+    int[] listenerIds = message.getListenerIds();
+    out.writeInt(listenerIds.length);
+    for (int listenerId : listenerIds) {
+      out.writeInt(listenerId);
+    }
+    out.writeInt(message.getPayload().length);
+    out.write(message.getPayload());
+    out.flush();
+
+    RandomAccessFile f = open();
+    f.seek(writePosition);
+    f.writeInt(bytes.size());
+    f.write(bytes.toByteArray());
+    writePosition = f.getFilePointer();
+    count++;
+  }
+
+  public InboundMessage read() throws IOException {
+    if (count == 0) {
+      return null;
+    }
+    RandomAccessFile f = open();
+    f.seek(readPosition);
+    byte[] record = new byte[f.readInt()];
+    f.readFully(record);
+    readPosition = f.getFilePointer();
+    if (--count == 0) {
+      // everything consumed, start over instead of growing the file forever
+      readPosition = 0;
+      writePosition = 0;
+      f.setLength(0);
+    }
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+    String topic = in.readUTF();
+    int qos = in.readByte();
+    boolean retained = in.readBoolean();
+    long arrivedAt = in.readLong();
+    int[] listenerIds = new int[in.readInt()];
+    for (int i = 0; i < listenerIds.length; i++) {
+      listenerIds[i] = in.readInt();
+    }
+    byte[] payload = new byte[in.readInt()];
+    in.readFully(payload);
+    return new InboundMessage(topic, payload, qos, retained, listenerIds, arrivedAt);
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public void delete() {
+    try {
+      if (raf != null) {
+        raf.close();
+      }
+    } catch (IOException e) {
+      // ignore it, the file is removed below anyway
+    }
+    raf = null;
+    count = 0;
+    readPosition = 0;
+    writePosition = 0;
+    //noinspection ResultOfMethodCallIgnored
+    file.delete();
+  }
+
+  private RandomAccessFile open() throws IOException {
+    if (raf == null) {
+      raf = new RandomAccessFile(file, "rw");
+      raf.setLength(0);
+    }
+    return raf;
+  }
+}
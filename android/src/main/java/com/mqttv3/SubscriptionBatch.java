@@ -0,0 +1,127 @@
+package com.mqttv3;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.eclipse.paho.android.service.MqttAndroidClient;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import java.util.Arrays;
+
+/**
+ * Subscribes or unsubscribes a list of topics with one SUBSCRIBE / UNSUBSCRIBE packet per chunk and
+ * resolves one promise with a result per topic once every chunk is acknowledged.
+ */
+public class SubscriptionBatch {
+  /**
+   * Granted QoS the broker returns for a refused subscription, also used for chunks that failed.
+   */
+  public static final int REFUSED = 0x80;
+
+  private final String[] topics;
+  private final int[] qos;
+  private final int[] granted;
+  private final String[] errors;
+  private int remaining;
+  private final Promise promise;
+
+  private SubscriptionBatch(String[] topics, int[] qos, int chunkSize, Promise promise) {
+    this.topics = topics;
+    this.qos = qos;
+    this.granted = qos == null ? null : new int[topics.length];
+    this.errors = new String[topics.length];
+    this.remaining = (topics.length + chunkSize - 1) / chunkSize;
+    this.promise = promise;
+  }
+
+  public static void subscribe(MqttAndroidClient client, String[] topics, int[] qos, int chunkSize, Promise promise) {
+    SubscriptionBatch batch = new SubscriptionBatch(topics, qos, chunkSize, promise);
+    if (batch.remaining == 0) {
+      promise.resolve(Arguments.createArray());
+      return;
+    }
+    for (int from = 0; from < topics.length; from += chunkSize) {
+      int to = Math.min(from + chunkSize, topics.length);
+      try {
+        client.subscribe(Arrays.copyOfRange(topics, from, to), Arrays.copyOfRange(qos, from, to), null, batch.listener(from, to));
+      } catch (MqttException e) {
+        batch.complete(from, to, null, e);
+      }
+    }
+  }
+
+  public static void unsubscribe(MqttAndroidClient client, String[] topics, int chunkSize, Promise promise) {
+    SubscriptionBatch batch = new SubscriptionBatch(topics, null, chunkSize, promise);
+    if (batch.remaining == 0) {
+      promise.resolve(Arguments.createArray());
+      return;
+    }
+    for (int from = 0; from < topics.length; from += chunkSize) {
+      int to = Math.min(from + chunkSize, topics.length);
+      try {
+        client.unsubscribe(Arrays.copyOfRange(topics, from, to), null, batch.listener(from, to));
+      } catch (MqttException e) {
+        batch.complete(from, to, null, e);
+      }
+    }
+  }
+
+  private IMqttActionListener listener(int from, int to) {
+    return new IMqttActionListener() {
+      @Override
+      public void onSuccess(IMqttToken asyncActionToken) {
+        complete(from, to, asyncActionToken.getGrantedQos(), null);
+      }
+
+      @Override
+      public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+        complete(from, to, null, exception);
+      }
+    };
+  }
+
+  private void complete(int from, int to, int[] grantedQos, Throwable exception) {
+    synchronized (this) {
+      for (int i = from; i < to; i++) {
+        if (exception != null) {
+          errors[i] = exception.getMessage() == null ? "subscribe error" : exception.getMessage();
+        }
+        if (granted != null) {
+          if (exception != null) {
+            granted[i] = REFUSED;
+          } else if (grantedQos != null && i - from < grantedQos.length) {
+            granted[i] = grantedQos[i - from];
+          } else {
+            granted[i] = qos[i];
+          }
+        }
+      }
+      if (--remaining > 0) {
+        return;
+      }
+    }
+    promise.resolve(results());
+  }
+
+  private WritableArray results() {
+    WritableArray results = Arguments.createArray();
+    for (int i = 0; i < topics.length; i++) {
+      WritableMap result = Arguments.createMap();
+      result.putString("topic", topics[i]);
+      if (granted != null) {
+        result.putInt("qos", granted[i]);
+      } else {
+        result.putBoolean("ok", errors[i] == null);
+      }
+      if (errors[i] != null) {
+        result.putString("error", errors[i]);
+      }
+      results.pushMap(result);
+    }
+    return results;
+  }
+}
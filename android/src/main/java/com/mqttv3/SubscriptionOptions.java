@@ -0,0 +1,40 @@
+package com.mqttv3;
+
+import com.facebook.react.bridge.ReadableMap;
+
+/**
+ * Native handling of the messages of one subscription, given to subscribe and subscribeMany.
+ */
+public class SubscriptionOptions {
+  public static final SubscriptionOptions DEFAULT = new SubscriptionOptions();
+  private static final String PAYLOAD_FORMAT_JSON = "json";
+
+  private boolean json;
+  private long conflateMs;
+
+  public static SubscriptionOptions fromReadableMap(ReadableMap params) {
+    SubscriptionOptions parameters = new SubscriptionOptions();
+    if (params.hasKey("payloadFormat") && !params.isNull("payloadFormat")) {
+      parameters.json = PAYLOAD_FORMAT_JSON.equalsIgnoreCase(params.getString("payloadFormat"));
+    }
+    if (params.hasKey("conflateMs") && !params.isNull("conflateMs") && params.getInt("conflateMs") > 0) {
+      parameters.conflateMs = params.getInt("conflateMs");
+    }
+    return parameters;
+  }
+
+  /**
+   * Whether payloads are parsed natively and emitted as structured values.
+   */
+  public boolean isJson() {
+    return json;
+  }
+
+  /**
+   * At most one message per topic is emitted in this many milliseconds, the latest one, 0 for
+   * every message.
+   */
+  public long getConflateMs() {
+    return conflateMs;
+  }
+}
@@ -0,0 +1,127 @@
+package com.mqttv3;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timer wheel for many short timeouts that mostly get cancelled, e.g. requests waiting for
+ * a reply. Scheduling and cancelling are O(1) and one periodic tick on the shared scheduler serves
+ * every timeout, the tick only runs while timeouts are pending.
+ */
+public class TimerWheel {
+  public class Timeout {
+    private final Runnable task;
+    private long rounds;
+    private boolean cancelled;
+
+    private Timeout(Runnable task, long rounds) {
+      this.task = task;
+      this.rounds = rounds;
+    }
+
+    /**
+     * @return whether the task was prevented from running
+     */
+    public boolean cancel() {
+      synchronized (TimerWheel.this) {
+        if (cancelled) {
+          return false;
+        }
+        cancelled = true;
+        pending--;
+        return true;
+      }
+    }
+  }
+
+  private final long tickMs;
+  private final List<LinkedList<Timeout>> buckets;
+  private final Runnable tickTask = new Runnable() {
+    @Override
+    public void run() {
+      tick();
+    }
+  };
+  private int cursor;
+  private int pending;
+  private ScheduledFuture<?> scheduledTick;
+
+  public TimerWheel(long tickMs, int size) {
+    this.tickMs = tickMs;
+    this.buckets = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      buckets.add(new LinkedList<Timeout>());
+    }
+  }
+
+  /**
+   * Runs the task on the scheduler thread after about {@code delayMs}, at most one tick late.
+   */
+  public synchronized Timeout schedule(Runnable task, long delayMs) {
+    long ticks = Math.max(1, (delayMs + tickMs - 1) / tickMs);
+    Timeout timeout = new Timeout(task, (ticks - 1) / buckets.size());
+    buckets.get((int) ((cursor + ticks) % buckets.size())).add(timeout);
+    pending++;
+    if (scheduledTick == null) {
+      scheduledTick = Schedulers.shared().scheduleAtFixedRate(tickTask, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+    return timeout;
+  }
+
+  private void tick() {
+    List<Runnable> expired = null;
+    synchronized (this) {
+      cursor = (cursor + 1) % buckets.size();
+      Iterator<Timeout> iterator = buckets.get(cursor).iterator();
+      while (iterator.hasNext()) {
+        Timeout timeout = iterator.next();
+        if (timeout.cancelled) {
+          iterator.remove();
+        } else if (timeout.rounds > 0) {
+          timeout.rounds--;
+        } else {
+          iterator.remove();
+          timeout.cancelled = true;
+          pending--;
+          if (expired == null) {
+            expired = new ArrayList<>();
+          }
+          expired.add(timeout.task);
+        }
+      }
+      if (pending == 0) {
+        stop();
+      }
+    }
+    if (expired != null) {
+      for (Runnable task : expired) {
+        task.run();
+      }
+    }
+  }
+
+  private void stop() {
+    if (scheduledTick != null) {
+      scheduledTick.cancel(false);
+      scheduledTick = null;
+    }
+    for (LinkedList<Timeout> bucket : buckets) {
+      for (Timeout timeout : bucket) {
+        timeout.cancelled = true;
+      }
+      bucket.clear();
+    }
+  }
+
+  /**
+   * Drops every pending timeout without running it.
+   */
+  public synchronized void close() {
+    pending = 0;
+    stop();
+  }
+}
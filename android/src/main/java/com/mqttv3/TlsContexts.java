@@ -0,0 +1,140 @@
+package com.mqttv3;
+
+import android.util.Base64;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * Process-wide cache of SSLContexts keyed by a hash of the certificate material and the session
+ * cache settings, so reconnects and clients sharing a configuration skip parsing the CA and PKCS12
+ * again and share one TLS session cache. Clients with other cache settings get their own context
+ * instead of resizing a shared one.
+ */
+public class TlsContexts {
+  private static final ConcurrentHashMap<String, SSLContext> contexts = new ConcurrentHashMap<>();
+
+  public static SSLSocketFactory getSocketFactory(String p12, String pass, String ca, boolean insecure) throws Exception {
+    return getContext(p12, pass, ca, insecure).getSocketFactory();
+  }
+
+  public static SSLContext getContext(String p12, String pass, String ca, boolean insecure) throws Exception {
+    return getContext(p12, pass, ca, insecure, -1, -1);
+  }
+
+  /**
+   * @param cacheSize      sessions kept by the client session cache, negative for the platform default
+   * @param timeoutSeconds lifetime of a cached session, negative for the platform default
+   */
+  public static SSLContext getContext(String p12, String pass, String ca, boolean insecure, int cacheSize, int timeoutSeconds) throws Exception {
+    String key = keyOf(p12, pass, ca, insecure, cacheSize, timeoutSeconds);
+    SSLContext context = contexts.get(key);
+    if (context != null) {
+      return context;
+    }
+    context = createContext(p12, pass, ca, insecure);
+    SSLSessionContext sessions = context.getClientSessionContext();
+    if (sessions != null) {
+      // set before the context is shared, never changed afterwards
+      if (cacheSize >= 0) {
+        sessions.setSessionCacheSize(cacheSize);
+      }
+      if (timeoutSeconds >= 0) {
+        sessions.setSessionTimeout(timeoutSeconds);
+      }
+    }
+    SSLContext existing = contexts.putIfAbsent(key, context);
+    return existing != null ? existing : context;
+  }
+
+  private static String keyOf(String p12, String pass, String ca, boolean insecure, int cacheSize, int timeoutSeconds) throws Exception {
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    for (String part : new String[]{p12, pass, ca}) {
+      if (part == null) {
+        // distinguishes a missing value from an empty one
+        digest.update((byte) 0);
+      } else {
+        byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) 1);
+        digest.update(new byte[]{(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length});
+        digest.update(bytes);
+      }
+    }
+    digest.update((byte) (insecure ? 1 : 0));
+    for (int value : new int[]{cacheSize, timeoutSeconds}) {
+      digest.update(new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+    }
+    return Base64.encodeToString(digest.digest(), Base64.NO_WRAP);
+  }
+
+  private static SSLContext createContext(String p12, String pass, String ca, boolean insecure) throws Exception {
+    TrustManager[] trustManagers = insecure ? getInsecureTrustManagers() : ca == null ? null : getTrustManagers(ca);
+    KeyManager[] keyManagers = p12 == null && pass == null ? null : getKeyManagers(p12, pass);
+    SSLContext sslContext = SSLContext.getInstance("TLS");
+    sslContext.init(keyManagers, trustManagers, null);
+    return sslContext;
+  }
+
+  private static TrustManager[] getTrustManagers(String ca) throws Exception {
+    CertificateFactory cf = CertificateFactory.getInstance("X.509");
+    byte[] bytes;
+    if (ca.startsWith("-----BEGIN CERTIFICATE-----")) {
+      bytes = ca.getBytes(StandardCharsets.UTF_8);
+    } else {
+      bytes = Base64.decode(ca, Base64.CRLF);
+    }
+    try (ByteArrayInputStream bis = new ByteArrayInputStream(bytes)) {
+      X509Certificate caCert = (X509Certificate) cf.generateCertificate(bis);
+      KeyStore caKs = KeyStore.getInstance(KeyStore.getDefaultType());
+      caKs.load(null, null);
+      caKs.setCertificateEntry("cert-certificate", caCert);
+      TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+      tmf.init(caKs);
+      return tmf.getTrustManagers();
+    }
+  }
+
+  private static TrustManager[] getInsecureTrustManagers() throws Exception {
+    TrustManager[] trustAllCerts = new TrustManager[]{new X509TrustManager() {
+      @Override
+      public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+      }
+
+      @Override
+      public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+      }
+
+      public X509Certificate[] getAcceptedIssuers() {
+        return new X509Certificate[0];
+      }
+    }};
+    return trustAllCerts;
+  }
+
+  private static KeyManager[] getKeyManagers(String p12, String pass) throws Exception {
+    KeyStore keyStore = KeyStore.getInstance("PKCS12");
+    char[] password = pass == null ? "".toCharArray() : pass.toCharArray();
+    try (ByteArrayInputStream bis = new ByteArrayInputStream(Base64.decode(p12, Base64.CRLF))) {
+      keyStore.load(bis, password);
+    }
+    KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    keyManagerFactory.init(keyStore, password);
+
+    return keyManagerFactory.getKeyManagers();
+  }
+}
@@ -0,0 +1,138 @@
+package com.mqttv3;
+
+import android.util.Base64;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Socket factory of the tlsResumption mode. It enables TLS 1.3 and session tickets on every socket
+ * of a context whose session cache {@link TlsContexts} sized, and reports whether a handshake
+ * resumed a cached session. A session counts as resumed when the server accepted a session id
+ * seen in an earlier handshake, the same test the platform does for TLS 1.2 before skipping the
+ * full exchange.
+ */
+public class TlsSessionSocketFactory extends SSLSocketFactory {
+  private static final String TLS_13 = "TLSv1.3";
+  private static final int SEEN_SESSIONS = 256;
+  private static final Map<String, Boolean> seenSessions = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+      return size() > SEEN_SESSIONS;
+    }
+  });
+
+  public interface Listener {
+    /**
+     * @param resumed   whether the session id was seen before, reliable up to TLS 1.2 only. TLS 1.3
+     *                  resumes with tickets and the session id is a compatibility value the server
+     *                  echoes, so a resumed TLS 1.3 handshake can report false
+     * @param elapsedMs from socket creation, so it covers the TCP connect and the handshake, only
+     *                  the handshake with happyEyeballs which layers TLS on a connected socket
+     */
+    void onHandshake(boolean resumed, String protocol, String cipherSuite, long elapsedMs);
+  }
+
+  private final SSLSocketFactory delegate;
+  private final Listener listener;
+
+  public TlsSessionSocketFactory(SSLContext context, Listener listener) {
+    this.delegate = context.getSocketFactory();
+    this.listener = listener;
+  }
+
+  @Override
+  public String[] getDefaultCipherSuites() {
+    return delegate.getDefaultCipherSuites();
+  }
+
+  @Override
+  public String[] getSupportedCipherSuites() {
+    return delegate.getSupportedCipherSuites();
+  }
+
+  @Override
+  public Socket createSocket() throws IOException {
+    return prepare(delegate.createSocket());
+  }
+
+  @Override
+  public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+    return prepare(delegate.createSocket(s, host, port, autoClose));
+  }
+
+  @Override
+  public Socket createSocket(String host, int port) throws IOException {
+    return prepare(delegate.createSocket(host, port));
+  }
+
+  @Override
+  public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+    return prepare(delegate.createSocket(host, port, localHost, localPort));
+  }
+
+  @Override
+  public Socket createSocket(InetAddress host, int port) throws IOException {
+    return prepare(delegate.createSocket(host, port));
+  }
+
+  @Override
+  public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+    return prepare(delegate.createSocket(address, port, localAddress, localPort));
+  }
+
+  private Socket prepare(Socket socket) {
+    if (!(socket instanceof SSLSocket)) {
+      return socket;
+    }
+    SSLSocket sslSocket = (SSLSocket) socket;
+    List<String> supported = Arrays.asList(sslSocket.getSupportedProtocols());
+    if (supported.contains(TLS_13)) {
+      List<String> enabled = new ArrayList<>(Arrays.asList(sslSocket.getEnabledProtocols()));
+      if (!enabled.contains(TLS_13)) {
+        enabled.add(0, TLS_13);
+        sslSocket.setEnabledProtocols(enabled.toArray(new String[0]));
+      }
+    }
+    enableSessionTickets(sslSocket);
+    long createdAt = System.nanoTime();
+    sslSocket.addHandshakeCompletedListener(new HandshakeCompletedListener() {
+      @Override
+      public void handshakeCompleted(HandshakeCompletedEvent event) {
+        byte[] id = event.getSession().getId();
+        boolean resumed = false;
+        if (id != null && id.length > 0) {
+          resumed = seenSessions.put(Base64.encodeToString(id, Base64.NO_WRAP), Boolean.TRUE) != null;
+        }
+        listener.onHandshake(resumed, event.getSession().getProtocol(), event.getCipherSuite(), (System.nanoTime() - createdAt) / 1_000_000);
+      }
+    });
+    return sslSocket;
+  }
+
+  /**
+   * Conscrypt sockets only expose session tickets through a non-public method.
+   */
+  private static void enableSessionTickets(SSLSocket socket) {
+    try {
+      Method method = socket.getClass().getMethod("setUseSessionTickets", boolean.class);
+      method.invoke(socket, true);
+    } catch (Exception ignored) {
+      // not a Conscrypt socket, tickets stay at the provider default
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package com.mqttv3;
+
+import java.util.HashMap;
+
+/**
+ * Canonical instances of recently seen topics, so queued and batched messages on the same topic
+ * share one String instead of each keeping the copy paho decoded. Bounded: the table is dropped
+ * once it holds {@link #MAX_TOPICS} entries. Not thread safe, used from the callback of one client.
+ */
+public class TopicInterner {
+  private static final int MAX_TOPICS = 1024;
+
+  private final HashMap<String, String> topics = new HashMap<>();
+
+  public String intern(String topic) {
+    String canonical = topics.get(topic);
+    if (canonical != null) {
+      return canonical;
+    }
+    if (topics.size() >= MAX_TOPICS) {
+      topics.clear();
+    }
+    topics.put(topic, topic);
+    return topic;
+  }
+}
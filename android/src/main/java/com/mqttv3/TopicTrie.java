@@ -0,0 +1,167 @@
+package com.mqttv3;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps MQTT topic filters to values and finds every value whose filter matches a concrete topic,
+ * honouring the {@code +} and {@code #} wildcards. A lookup walks one path per topic level instead
+ * of testing every registered filter.
+ */
+public class TopicTrie<T> {
+  private static final String SINGLE_LEVEL = "+";
+  private static final String MULTI_LEVEL = "#";
+
+  private static class Node<T> {
+    final Map<String, Node<T>> children = new HashMap<>();
+    final Set<T> values = new LinkedHashSet<>();
+
+    boolean isEmpty() {
+      return children.isEmpty() && values.isEmpty();
+    }
+  }
+
+  private final Node<T> root = new Node<>();
+  private int size;
+
+  public synchronized void add(String filter, T value) {
+    Node<T> node = root;
+    int start = 0;
+    while (true) {
+      int end = filter.indexOf('/', start);
+      String level = end < 0 ? filter.substring(start) : filter.substring(start, end);
+      Node<T> child = node.children.get(level);
+      if (child == null) {
+        child = new Node<>();
+        node.children.put(level, child);
+      }
+      node = child;
+      if (end < 0) {
+        break;
+      }
+      start = end + 1;
+    }
+    if (node.values.add(value)) {
+      size++;
+    }
+  }
+
+  public synchronized boolean remove(String filter, T value) {
+    if (remove(root, filter, 0, value)) {
+      size--;
+      return true;
+    }
+    return false;
+  }
+
+  private boolean remove(Node<T> node, String filter, int start, T value) {
+    int end = filter.indexOf('/', start);
+    String level = end < 0 ? filter.substring(start) : filter.substring(start, end);
+    Node<T> child = node.children.get(level);
+    if (child == null) {
+      return false;
+    }
+    boolean removed = end < 0 ? child.values.remove(value) : remove(child, filter, end + 1, value);
+    if (removed && child.isEmpty()) {
+      node.children.remove(level);
+    }
+    return removed;
+  }
+
+  /**
+   * Adds the values of every filter matching {@code topic} to {@code out}.
+   */
+  public synchronized void match(String topic, Collection<T> out) {
+    if (size == 0) {
+      return;
+    }
+    // wildcards at the first level never match topics starting with '$', e.g. $SYS/broker/load
+    boolean system = topic.startsWith("$");
+    match(root, topic, 0, system, out);
+  }
+
+  private void match(Node<T> node, String topic, int start, boolean system, Collection<T> out) {
+    if (!system) {
+      Node<T> multi = node.children.get(MULTI_LEVEL);
+      if (multi != null) {
+        out.addAll(multi.values);
+      }
+    }
+    int end = topic.indexOf('/', start);
+    String level = end < 0 ? topic.substring(start) : topic.substring(start, end);
+    Node<T> exact = node.children.get(level);
+    Node<T> single = system ? null : node.children.get(SINGLE_LEVEL);
+    if (end < 0) {
+      if (exact != null) {
+        collectLeaf(exact, out);
+      }
+      if (single != null) {
+        collectLeaf(single, out);
+      }
+      return;
+    }
+    if (exact != null) {
+      match(exact, topic, end + 1, false, out);
+    }
+    if (single != null) {
+      match(single, topic, end + 1, false, out);
+    }
+  }
+
+  private void collectLeaf(Node<T> node, Collection<T> out) {
+    out.addAll(node.values);
+    // "a/#" also matches "a"
+    Node<T> multi = node.children.get(MULTI_LEVEL);
+    if (multi != null) {
+      out.addAll(multi.values);
+    }
+  }
+
+  /**
+   * Whether a single filter matches a concrete topic, for one-off checks that don't justify a trie.
+   */
+  public static boolean matches(String filter, String topic) {
+    if (topic.startsWith("$") && (filter.startsWith(SINGLE_LEVEL) || filter.startsWith(MULTI_LEVEL))) {
+      return false;
+    }
+    int f = 0;
+    int t = 0;
+    while (true) {
+      int filterEnd = filter.indexOf('/', f);
+      String level = filterEnd < 0 ? filter.substring(f) : filter.substring(f, filterEnd);
+      if (MULTI_LEVEL.equals(level)) {
+        return true;
+      }
+      if (t > topic.length()) {
+        // "a/#" also matches "a", anything else needs another topic level
+        return false;
+      }
+      int topicEnd = topic.indexOf('/', t);
+      int topicLevelEnd = topicEnd < 0 ? topic.length() : topicEnd;
+      if (!SINGLE_LEVEL.equals(level) && !topic.regionMatches(t, level, 0, level.length())) {
+        return false;
+      }
+      if (!SINGLE_LEVEL.equals(level) && topicLevelEnd - t != level.length()) {
+        return false;
+      }
+      if (filterEnd < 0) {
+        return topicEnd < 0;
+      }
+      f = filterEnd + 1;
+      t = topicEnd < 0 ? topic.length() + 1 : topicEnd + 1;
+    }
+  }
+
+  public synchronized boolean isEmpty() {
+    return size == 0;
+  }
+
+  public synchronized void clear() {
+    root.children.clear();
+    root.values.clear();
+    size = 0;
+  }
+}
@@ -0,0 +1,95 @@
+package com.mqttv3;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log output gated by the logLevel client option. Callers check {@link #isDebugEnabled()} before
+ * building a message, so a disabled level costs a field read and no string work. Per message traces
+ * can be sampled with logSampleRate to keep production logs readable.
+ */
+public class Tracer {
+  public enum Level {
+    DEBUG("debug", Log.DEBUG), INFO("info", Log.INFO), WARN("warn", Log.WARN), ERROR("error", Log.ERROR), NONE("none", Integer.MAX_VALUE);
+
+    private final String value;
+    private final int priority;
+
+    Level(String value, int priority) {
+      this.value = value;
+      this.priority = priority;
+    }
+
+    public static Level fromString(@Nullable String value) {
+      for (Level level : values()) {
+        if (level.value.equalsIgnoreCase(value)) {
+          return level;
+        }
+      }
+      return WARN;
+    }
+  }
+
+  public static final Tracer DEFAULT = new Tracer(Level.WARN, 1);
+
+  private final int priority;
+  private final int sampleRate;
+  private final AtomicLong messages = new AtomicLong();
+
+  public Tracer(Level level, int sampleRate) {
+    this.priority = level.priority;
+    this.sampleRate = Math.max(sampleRate, 1);
+  }
+
+  public boolean isDebugEnabled() {
+    return priority <= Log.DEBUG;
+  }
+
+  public boolean isInfoEnabled() {
+    return priority <= Log.INFO;
+  }
+
+  /**
+   * Whether the message at hand should be traced: debug must be enabled and, with a sample rate of
+   * n, only one message in n is picked.
+   */
+  public boolean sampleMessage() {
+    if (priority > Log.DEBUG) {
+      return false;
+    }
+    return sampleRate == 1 || messages.incrementAndGet() % sampleRate == 0;
+  }
+
+  public void d(String message) {
+    if (priority <= Log.DEBUG) {
+      Log.d(MqttV3Client.NAME, message);
+    }
+  }
+
+  public void i(String message) {
+    if (priority <= Log.INFO) {
+      Log.i(MqttV3Client.NAME, message);
+    }
+  }
+
+  public void w(String message) {
+    if (priority <= Log.WARN) {
+      Log.w(MqttV3Client.NAME, message);
+    }
+  }
+
+  public void w(String message, @Nullable Throwable t) {
+    if (priority <= Log.WARN) {
+      Log.w(MqttV3Client.NAME, message, t);
+    }
+  }
+
+  public void e(String message, @Nullable Throwable t) {
+    if (priority <= Log.ERROR) {
+      Log.e(MqttV3Client.NAME, message, t);
+    }
+  }
+}
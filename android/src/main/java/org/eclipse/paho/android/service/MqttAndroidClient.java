@@ -131,6 +131,15 @@ public class MqttAndroidClient extends BroadcastReceiver implements
 	// the service
 	private String clientHandle;
 
+	// receives the callbacks of our handle directly from the service, the
+	// broadcast receiver only gets those sent while it isn't set
+	private final MqttService.CallbackListener callbackListener = new MqttService.CallbackListener() {
+		@Override
+		public void onCallback(Bundle data) {
+			dispatch(data);
+		}
+	};
+
 	private Context myContext;
 
 	// We hold the various tokens in a collection and pass identifiers for them
@@ -155,6 +164,7 @@ public class MqttAndroidClient extends BroadcastReceiver implements
 
 	private volatile boolean receiverRegistered = false;
 	private volatile boolean bindedService = false;
+	private volatile boolean serviceReconnect = true;
 
 	/**
 	 * Constructor - create an MqttAndroidClient that can be used to communicate with an MQTT server on android
@@ -292,6 +302,7 @@ public class MqttAndroidClient extends BroadcastReceiver implements
 				clientHandle = mqttService.getClient(serverURI, clientId, myContext.getApplicationInfo().packageName,persistence);
 			}
 			mqttService.close(clientHandle);
+			mqttService.removeCallbackListener(clientHandle, callbackListener);
 		}
 	}
 
@@ -459,6 +470,8 @@ public class MqttAndroidClient extends BroadcastReceiver implements
 			clientHandle = mqttService.getClient(serverURI, clientId,myContext.getApplicationInfo().packageName,
 					persistence);
 		}
+		mqttService.setCallbackListener(clientHandle, callbackListener);
+		mqttService.setServiceReconnect(clientHandle, serviceReconnect);
 		mqttService.setTraceEnabled(traceEnabled);
 		mqttService.setTraceCallbackId(clientHandle);
 
@@ -1367,6 +1380,16 @@ public class MqttAndroidClient extends BroadcastReceiver implements
 			return;
 		}
 
+		dispatch(data);
+	}
+
+	/**
+	 * Process the results of operations and asynchronous activities of our
+	 * client handle, received by broadcast or through the callback listener
+	 *
+	 * @param data
+	 */
+	private void dispatch(Bundle data) {
 		String action = data.getString(MqttServiceConstants.CALLBACK_ACTION);
 
 		if (MqttServiceConstants.CONNECT_ACTION.equals(action)) {
@@ -1457,6 +1480,7 @@ public class MqttAndroidClient extends BroadcastReceiver implements
 	 * @param data
 	 */
 	private void disconnected(Bundle data) {
+		mqttService.removeCallbackListener(clientHandle, callbackListener);
 		clientHandle = null; // avoid reuse!
 		IMqttToken token = removeMqttToken(data);
 		if (token != null) {
@@ -1533,6 +1557,9 @@ public class MqttAndroidClient extends BroadcastReceiver implements
 	 */
 	private void subscribeAction(Bundle data) {
 		IMqttToken token = removeMqttToken(data);
+		if (token != null) {
+			((MqttTokenAndroid) token).setGrantedQos(data.getIntArray(MqttServiceConstants.CALLBACK_GRANTED_QOS));
+		}
 		simpleAction(token, data);
 	}
 
@@ -1660,6 +1687,17 @@ public class MqttAndroidClient extends BroadcastReceiver implements
 		return tokenMap.get(Integer.parseInt(activityToken));
 	}
 
+	/**
+	 * Allows or prevents the service reconnecting this client by itself, which
+	 * it does for connections with cleanSession false when the network comes
+	 * back. Takes effect with the next connect.
+	 *
+	 * @param serviceReconnect false when the application reconnects on its own
+	 */
+	public void setServiceReconnect(boolean serviceReconnect) {
+		this.serviceReconnect = serviceReconnect;
+	}
+
 	/**
 	 * Sets the DisconnectedBufferOptions for this client
 	 * @param bufferOpts the DisconnectedBufferOptions
@@ -1750,6 +1788,9 @@ public class MqttAndroidClient extends BroadcastReceiver implements
 				LocalBroadcastManager.getInstance(myContext).unregisterReceiver(this);
 				receiverRegistered = false;
 			}
+			if (mqttService != null && clientHandle != null) {
+				mqttService.removeCallbackListener(clientHandle, callbackListener);
+			}
 			if(bindedService){
 				try{
 					myContext.unbindService(serviceConnection);
@@ -1774,6 +1815,9 @@ public class MqttAndroidClient extends BroadcastReceiver implements
 			if(!receiverRegistered){
 				registerReceiver(this);
 			}
+			if (mqttService != null && clientHandle != null) {
+				mqttService.setCallbackListener(clientHandle, callbackListener);
+			}
 		}
 	}
 }
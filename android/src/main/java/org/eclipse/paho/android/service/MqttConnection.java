@@ -130,6 +130,10 @@ class MqttConnection implements MqttCallbackExtended {
 	// This variable uses to avoid reconnect multiple times.
 	private volatile boolean isConnecting = false;
 
+	// Whether the service may reconnect this connection by itself, e.g. on
+	// network changes. Off when the application reconnects on its own.
+	private volatile boolean serviceReconnect = true;
+
 	// Saved sent messages and their corresponding Topics, activityTokens and
 	// invocationContexts, so we can handle "deliveryComplete" callbacks
 	// from the mqttClient
@@ -271,6 +275,11 @@ class MqttConnection implements MqttCallbackExtended {
 					service.traceDebug(TAG,
 							"myClient != null and the client is connecting. Connect return directly.");
 					service.traceDebug(TAG,"Connect return:isConnecting:"+isConnecting+".disconnected:"+disconnected);
+					// answer the caller, it would otherwise wait for this connect forever
+					resultBundle.putString(MqttServiceConstants.CALLBACK_ERROR_MESSAGE, "client is connecting");
+					resultBundle.putSerializable(MqttServiceConstants.CALLBACK_EXCEPTION,
+							new MqttException(MqttException.REASON_CODE_CONNECT_IN_PROGRESS));
+					service.callbackToActivity(clientHandle, Status.ERROR, resultBundle);
 				}else if(!disconnected){
 					service.traceDebug(TAG,"myClient != null and the client is connected and notify!");
 					doAfterConnectSuccess(resultBundle);
@@ -289,6 +298,9 @@ class MqttConnection implements MqttCallbackExtended {
 				myClient = new MqttAsyncClient(serverURI, clientId,
 						persistence, alarmPingSender);
 				myClient.setCallback(this);
+				if (bufferOpts != null) {
+					myClient.setBufferOpts(bufferOpts);
+				}
 
 				service.traceDebug(TAG,"Do Real connect!");
 				setConnectingState(true);
@@ -987,6 +999,10 @@ class MqttConnection implements MqttCallbackExtended {
 
 		@Override
 		public void onSuccess(IMqttToken asyncActionToken) {
+			int[] grantedQos = asyncActionToken.getGrantedQos();
+			if (grantedQos != null) {
+				resultBundle.putIntArray(MqttServiceConstants.CALLBACK_GRANTED_QOS, grantedQos);
+			}
 			service.callbackToActivity(clientHandle, Status.OK, resultBundle);
 		}
 
@@ -1032,6 +1048,11 @@ class MqttConnection implements MqttCallbackExtended {
 			return ;
 		}
 
+		if (!serviceReconnect) {
+			service.traceDebug(TAG, "Reconnect is left to the application. Reconnect return directly.");
+			return;
+		}
+
 		if(!service.isOnline()){
 			service.traceDebug(TAG,
 					"The network is not reachable. Will not do reconnect");
@@ -1131,11 +1152,22 @@ class MqttConnection implements MqttCallbackExtended {
 	 */
 	public void setBufferOpts(DisconnectedBufferOptions bufferOpts) {
 		this.bufferOpts = bufferOpts;
-		myClient.setBufferOpts(bufferOpts);
+		if (myClient != null) {
+			myClient.setBufferOpts(bufferOpts);
+		}
+	}
+
+	/**
+	 * Allows or prevents the service reconnecting this connection by itself
+	 *
+	 * @param serviceReconnect false when the application reconnects on its own
+	 */
+	public void setServiceReconnect(boolean serviceReconnect) {
+		this.serviceReconnect = serviceReconnect;
 	}
 
 	public int getBufferedMessageCount(){
-		return myClient.getBufferedMessageCount();
+		return myClient == null ? 0 : myClient.getBufferedMessageCount();
 	}
 
 	public MqttMessage getBufferedMessage(int bufferIndex){
@@ -78,6 +78,8 @@ import androidx.localbroadcastmanager.content.LocalBroadcastManager;
  * {@link MqttServiceConstants#CALLBACK_TO_ACTIVITY
  * MqttServiceConstants.CALLBACK_TO_ACTIVITY} which allows the Activity to
  * register a listener with an appropriate IntentFilter.<br>
+ * A client in the same process can instead set a CallbackListener for its
+ * handle and receive the same data with a direct call.<br>
  * Further data is provided by "Extra Data" in the Intent, as follows :-
  * </p>
  * <table border="1" summary="">
@@ -254,6 +256,21 @@ public class MqttService extends Service implements MqttTraceHandler {
 	// mapping from client handle strings to actual client connections.
 	private Map<String/* clientHandle */, MqttConnection/* client */> connections = new ConcurrentHashMap<>();
 
+	// clients in this process receiving their callbacks directly instead of by broadcast
+	private final ConcurrentHashMap<String/* clientHandle */, CallbackListener> callbackListeners = new ConcurrentHashMap<>();
+
+	/**
+	 * Receives the callbacks of one client handle with a direct call, on the thread raising them,
+	 * instead of an Intent broadcast through the LocalBroadcastManager that every client receives
+	 * and filters by handle.
+	 */
+	interface CallbackListener {
+		/**
+		 * @param data the callback data, as the extras of the broadcast Intent, only valid during the call
+		 */
+		void onCallback(Bundle data);
+	}
+
   public MqttService() {
     super();
   }
@@ -273,6 +290,15 @@ public class MqttService extends Service implements MqttTraceHandler {
       Bundle dataBundle) {
     // Don't call traceDebug, as it will try to callbackToActivity leading
     // to recursion.
+		CallbackListener listener = clientHandle == null ? null : callbackListeners.get(clientHandle);
+		if (listener != null) {
+			if (dataBundle == null) {
+				dataBundle = new Bundle();
+			}
+			dataBundle.putSerializable(MqttServiceConstants.CALLBACK_STATUS, status);
+			listener.onCallback(dataBundle);
+			return;
+		}
     Intent callbackIntent = new Intent(
         MqttServiceConstants.CALLBACK_TO_ACTIVITY);
     if (clientHandle != null) {
@@ -286,6 +312,31 @@ public class MqttService extends Service implements MqttTraceHandler {
     LocalBroadcastManager.getInstance(this).sendBroadcast(callbackIntent);
   }
 
+	/**
+	 * Deliver the callbacks of a client handle to a listener in this process,
+	 * clients without one still receive them by broadcast
+	 *
+	 * @param clientHandle
+	 *            identifies the MqttConnection
+	 * @param listener
+	 *            receives the callbacks, replaces a previous listener of the handle
+	 */
+	void setCallbackListener(String clientHandle, CallbackListener listener) {
+		callbackListeners.put(clientHandle, listener);
+	}
+
+	/**
+	 * Go back to broadcasting the callbacks of a client handle
+	 *
+	 * @param clientHandle
+	 *            identifies the MqttConnection
+	 * @param listener
+	 *            the listener to remove, a newer listener of the handle is kept
+	 */
+	void removeCallbackListener(String clientHandle, CallbackListener listener) {
+		callbackListeners.remove(clientHandle, listener);
+	}
+
   // The major API implementation follows :-
 
   /**
@@ -904,6 +955,16 @@ public class MqttService extends Service implements MqttTraceHandler {
     client.setBufferOpts(bufferOpts);
   }
 
+  /**
+   * Allows or prevents the service reconnecting a client by itself
+   * @param clientHandle identifier for the client
+   * @param serviceReconnect false when the application reconnects on its own
+   */
+  public void setServiceReconnect(String clientHandle, boolean serviceReconnect) {
+    MqttConnection client = getConnection(clientHandle);
+    client.setServiceReconnect(serviceReconnect);
+  }
+
   public int getBufferedMessageCount(String clientHandle){
     MqttConnection client = getConnection(clientHandle);
     return client.getBufferedMessageCount();
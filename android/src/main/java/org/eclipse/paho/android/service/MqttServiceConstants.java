@@ -79,6 +79,7 @@ interface MqttServiceConstants {
                                               + ".ERROR_NUMBER";
 
   String CALLBACK_EXCEPTION = MqttService.TAG + ".exception";
+  String CALLBACK_GRANTED_QOS = MqttService.TAG + ".grantedQos";
   
   //Intent prefix for Ping sender.
   String PING_SENDER = MqttService.TAG + ".pingSender.";
@@ -45,6 +45,8 @@ class MqttTokenAndroid implements IMqttToken {
 
   private MqttException pendingException;
 
+  private int[] grantedQos; // delivered in the callback bundle, delegate is null for subscribe
+
   /**
    * Standard constructor
    * 
@@ -246,7 +248,14 @@ class MqttTokenAndroid implements IMqttToken {
   
   @Override
   public int[] getGrantedQos() {
+    if (grantedQos != null || delegate == null) {
+      return grantedQos;
+    }
     return delegate.getGrantedQos();
   }
+
+  void setGrantedQos(int[] grantedQos) {
+    this.grantedQos = grantedQos;
+  }
   
 }
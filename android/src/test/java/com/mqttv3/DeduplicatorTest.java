@@ -0,0 +1,64 @@
+package com.mqttv3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class DeduplicatorTest {
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void dropsRedeliveryWithinWindow() {
+    Deduplicator dedup = new Deduplicator(16, 60_000, null, false);
+    assertFalse(dedup.isDuplicate("a", bytes("1"), false));
+    assertTrue(dedup.isDuplicate("a", bytes("1"), true));
+    assertEquals(2, dedup.getChecked());
+    assertEquals(1, dedup.getSuppressed());
+  }
+
+  @Test
+  public void keepsRepeatedValueWithoutDupFlag() {
+    Deduplicator dedup = new Deduplicator(16, 60_000, null, false);
+    assertFalse(dedup.isDuplicate("switch", bytes("ON"), false));
+    assertFalse(dedup.isDuplicate("switch", bytes("ON"), false));
+    assertEquals(0, dedup.getSuppressed());
+  }
+
+  @Test
+  public void dropsRepeatsWhenEnabled() {
+    Deduplicator dedup = new Deduplicator(16, 60_000, null, true);
+    assertFalse(dedup.isDuplicate("switch", bytes("ON"), false));
+    assertTrue(dedup.isDuplicate("switch", bytes("ON"), false));
+  }
+
+  @Test
+  public void tellsTopicsApart() {
+    Deduplicator dedup = new Deduplicator(16, 60_000, null, false);
+    assertFalse(dedup.isDuplicate("a", bytes("1"), false));
+    assertFalse(dedup.isDuplicate("b", bytes("1"), true));
+  }
+
+  @Test
+  public void forgetsAfterWindow() throws InterruptedException {
+    Deduplicator dedup = new Deduplicator(16, 1, null, false);
+    assertFalse(dedup.isDuplicate("a", bytes("1"), false));
+    Thread.sleep(5);
+    assertFalse(dedup.isDuplicate("a", bytes("1"), true));
+  }
+
+  @Test
+  public void forgetsLeastRecentlySeenBeyondCapacity() {
+    Deduplicator dedup = new Deduplicator(2, 60_000, null, false);
+    assertFalse(dedup.isDuplicate("a", bytes("1"), false));
+    assertFalse(dedup.isDuplicate("a", bytes("2"), false));
+    assertFalse(dedup.isDuplicate("a", bytes("3"), false));
+    assertFalse(dedup.isDuplicate("a", bytes("1"), true));
+    assertTrue(dedup.isDuplicate("a", bytes("3"), true));
+  }
+}
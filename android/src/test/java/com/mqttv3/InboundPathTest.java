@@ -0,0 +1,101 @@
+package com.mqttv3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The steps {@code MqttV3Client.messageArrived} takes for a QoS 1 message with the default options,
+ * in the same order, with the bridge stubbed behind the queue.
+ */
+public class InboundPathTest {
+  private static final int MESSAGES = 10000;
+
+  /**
+   * A JS thread that is never behind, consumed as soon as the drain emits.
+   */
+  private static class JsThread extends ReactApplicationContext {
+    JsThread() {
+      super(null);
+    }
+
+    @Override
+    public boolean runOnJSQueueThread(Runnable runnable) {
+      runnable.run();
+      return true;
+    }
+  }
+
+  private static class Counter implements InboundQueue.Sink {
+    final AtomicInteger emitted = new AtomicInteger();
+
+    @Override
+    public void emit(InboundMessage message) {
+      emitted.incrementAndGet();
+    }
+  }
+
+  private final TopicInterner interner = new TopicInterner();
+  private final ClientStats stats = new ClientStats();
+  private final Deduplicator dedup = new Deduplicator(256, 60000, null, false);
+  private final MessageRouter router = new MessageRouter();
+
+  private void arrived(InboundQueue queue, String arrivedTopic, byte[] payload) {
+    String topic = interner.intern(arrivedTopic);
+    Tracer.DEFAULT.sampleMessage();
+    stats.messageArrived(payload.length);
+    if (dedup.isDuplicate(topic, payload, false)) {
+      return;
+    }
+    int[] listenerIds = router.route(topic);
+    if (listenerIds.length == 0) {
+      return;
+    }
+    queue.offer(new InboundMessage(topic, payload, 1, false, listenerIds, System.nanoTime()));
+  }
+
+  @Test
+  public void allocatesConstantBytesPerMessage() throws InterruptedException {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+    assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+    router.add("sensors/+/state", 1);
+    Counter sink = new Counter();
+    InboundQueue queue = new InboundQueue(new JsThread(), "client", 1024, InboundQueue.Overflow.DROP_OLDEST, Tracer.DEFAULT, sink);
+    // paho decodes a String and a payload of its own for every message, made up front
+    String[] topics = new String[MESSAGES];
+    byte[][] payloads = new byte[MESSAGES][];
+    for (int i = 0; i < MESSAGES; i++) {
+      topics[i] = new String("sensors/1/state");
+      payloads[i] = new byte[]{(byte) i, (byte) (i >> 8)};
+    }
+    // warm up, fills the interner, the route cache and the dedup LRU, starts the drain thread
+    for (int i = 0; i < MESSAGES; i++) {
+      arrived(queue, topics[i], payloads[i]);
+    }
+
+    long thread = Thread.currentThread().getId();
+    long before = allocations.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < MESSAGES; i++) {
+      arrived(queue, topics[i], payloads[i]);
+    }
+    long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+    queue.close();
+
+    assertEquals(2 * MESSAGES, dedup.getChecked());
+    assertTrue(sink.emitted.get() > 0);
+    // what is left per message: the InboundMessage, the dedup entry with its boxed hash and time,
+    // and the hand-off to the drain thread when it had caught up
+    long perMessage = allocated / MESSAGES;
+    assertTrue("allocated " + perMessage + " bytes per message", perMessage < 256);
+  }
+}
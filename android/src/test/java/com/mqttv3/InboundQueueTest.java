@@ -0,0 +1,231 @@
+package com.mqttv3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class InboundQueueTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // InboundQueue keeps at most this many messages ahead of the JS thread
+  private static final int MAX_UNCONSUMED = 64;
+
+  /**
+   * Holds back the JS thread, so what passed the queue stays unconsumed until released.
+   */
+  private static class JsThread extends ReactApplicationContext {
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final File cacheDir;
+
+    JsThread(File cacheDir) {
+      super(null);
+      this.cacheDir = cacheDir;
+    }
+
+    @Override
+    public File getCacheDir() {
+      return cacheDir;
+    }
+
+    @Override
+    public synchronized boolean runOnJSQueueThread(Runnable runnable) {
+      tasks.add(runnable);
+      return true;
+    }
+
+    void release() {
+      List<Runnable> released;
+      synchronized (this) {
+        released = new ArrayList<>(tasks);
+        tasks.clear();
+      }
+      for (Runnable task : released) {
+        task.run();
+      }
+    }
+  }
+
+  private static class Recorder implements InboundQueue.Sink {
+    private final List<String> topics = new ArrayList<>();
+
+    @Override
+    public synchronized void emit(InboundMessage message) {
+      topics.add(message.getTopic());
+      notifyAll();
+    }
+
+    synchronized List<String> await(int count) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + 5000;
+      while (topics.size() < count && System.currentTimeMillis() < deadline) {
+        wait(100);
+      }
+      assertEquals(count, topics.size());
+      return new ArrayList<>(topics);
+    }
+  }
+
+  private static Thread offerInBackground(final InboundQueue queue, final InboundMessage message) {
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        queue.offer(message);
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+  private static InboundMessage message(int index) {
+    return new InboundMessage(String.valueOf(index), new byte[0], 0, false, new int[0], 0);
+  }
+
+  /**
+   * Fills the bridge so nothing drains, then offers {@code extra} more to a queue of 4.
+   */
+  private static InboundQueue saturated(JsThread js, Recorder sink, InboundQueue.Overflow overflow, int extra) throws InterruptedException {
+    return saturated(new InboundQueue(js, "client", 4, overflow, Tracer.DEFAULT, sink), sink, extra);
+  }
+
+  private static InboundQueue saturated(InboundQueue queue, Recorder sink, int extra) throws InterruptedException {
+    // one at a time, the queue itself holds only 4 until the drain picks them up
+    for (int i = 0; i < MAX_UNCONSUMED; i++) {
+      queue.offer(message(i));
+      sink.await(i + 1);
+    }
+    for (int i = 0; i < extra; i++) {
+      queue.offer(message(MAX_UNCONSUMED + i));
+    }
+    return queue;
+  }
+
+  @Test
+  public void dropOldestKeepsNewestMessages() throws InterruptedException {
+    JsThread js = new JsThread(folder.getRoot());
+    Recorder sink = new Recorder();
+    InboundQueue queue = saturated(js, sink, InboundQueue.Overflow.DROP_OLDEST, 6);
+    assertEquals(2, queue.getDropped());
+    js.release();
+    List<String> topics = sink.await(MAX_UNCONSUMED + 4);
+    assertEquals("66", topics.get(MAX_UNCONSUMED));
+    assertEquals("69", topics.get(MAX_UNCONSUMED + 3));
+    queue.close();
+  }
+
+  @Test
+  public void dropNewestKeepsOldestMessages() throws InterruptedException {
+    JsThread js = new JsThread(folder.getRoot());
+    Recorder sink = new Recorder();
+    InboundQueue queue = saturated(js, sink, InboundQueue.Overflow.DROP_NEWEST, 6);
+    assertEquals(2, queue.getDropped());
+    js.release();
+    List<String> topics = sink.await(MAX_UNCONSUMED + 4);
+    assertEquals("64", topics.get(MAX_UNCONSUMED));
+    assertEquals("67", topics.get(MAX_UNCONSUMED + 3));
+    queue.close();
+  }
+
+  @Test
+  public void blockHoldsBackOffererUntilDrained() throws InterruptedException {
+    JsThread js = new JsThread(folder.getRoot());
+    Recorder sink = new Recorder();
+    InboundQueue queue = saturated(js, sink, InboundQueue.Overflow.BLOCK, 4);
+    Thread offerer = offerInBackground(queue, message(68));
+    offerer.join(200);
+    assertTrue(offerer.isAlive());
+    js.release();
+    offerer.join(5000);
+    assertFalse(offerer.isAlive());
+    List<String> topics = sink.await(MAX_UNCONSUMED + 5);
+    assertEquals("68", topics.get(MAX_UNCONSUMED + 4));
+    assertEquals(0, queue.getDropped());
+    queue.close();
+  }
+
+  @Test
+  public void closeReleasesBlockedOfferer() throws InterruptedException {
+    JsThread js = new JsThread(folder.getRoot());
+    Recorder sink = new Recorder();
+    InboundQueue queue = saturated(js, sink, InboundQueue.Overflow.BLOCK, 4);
+    Thread offerer = offerInBackground(queue, message(68));
+    offerer.join(200);
+    assertTrue(offerer.isAlive());
+    queue.close();
+    offerer.join(5000);
+    assertFalse(offerer.isAlive());
+    js.release();
+    Thread.sleep(50);
+    assertEquals(MAX_UNCONSUMED, sink.await(MAX_UNCONSUMED).size());
+  }
+
+  @Test
+  public void blockDropsInsteadOfStallingMainThread() throws InterruptedException {
+    JsThread js = new JsThread(folder.getRoot());
+    Recorder sink = new Recorder();
+    InboundQueue queue = new InboundQueue(js, "client", 4, InboundQueue.Overflow.BLOCK, Tracer.DEFAULT, sink) {
+      @Override
+      boolean onMainThread() {
+        return true;
+      }
+    };
+    // would hang on the fifth extra message if it blocked
+    saturated(queue, sink, 5);
+    assertEquals(1, queue.getDropped());
+    js.release();
+    List<String> topics = sink.await(MAX_UNCONSUMED + 4);
+    assertEquals("67", topics.get(MAX_UNCONSUMED + 3));
+    queue.close();
+  }
+
+  @Test
+  public void spillKeepsArrivalOrderOnDisk() throws InterruptedException {
+    JsThread js = new JsThread(folder.getRoot());
+    Recorder sink = new Recorder();
+    InboundQueue queue = saturated(js, sink, InboundQueue.Overflow.SPILL, 10);
+    assertEquals(0, queue.getDropped());
+    File spilled = new File(folder.getRoot(), InboundQueue.spillFileName("client"));
+    assertTrue(spilled.length() > 0);
+    // the queue is no longer full, still a new arrival may not overtake the spilled ones
+    js.release();
+    queue.offer(message(MAX_UNCONSUMED + 10));
+    List<String> topics = sink.await(MAX_UNCONSUMED + 11);
+    for (int i = 0; i < topics.size(); i++) {
+      assertEquals(String.valueOf(i), topics.get(i));
+    }
+    queue.close();
+    assertFalse(spilled.exists());
+  }
+
+  @Test
+  public void spillFilesOfCollidingHashCodesDiffer() {
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    assertFalse(InboundQueue.spillFileName("Aa").equals(InboundQueue.spillFileName("BB")));
+    assertEquals(InboundQueue.spillFileName("Aa"), InboundQueue.spillFileName("Aa"));
+  }
+
+  @Test
+  public void tryOfferRefusesOnlyWhenFull() throws InterruptedException {
+    JsThread js = new JsThread(folder.getRoot());
+    Recorder sink = new Recorder();
+    InboundQueue queue = saturated(js, sink, InboundQueue.Overflow.DROP_OLDEST, 3);
+    assertTrue(queue.tryOffer(message(100)));
+    assertFalse(queue.tryOffer(message(101)));
+    assertEquals(0, queue.getDropped());
+    queue.close();
+    // a closed queue takes everything and emits nothing
+    assertTrue(queue.tryOffer(message(102)));
+    js.release();
+    Thread.sleep(50);
+    assertEquals(MAX_UNCONSUMED, sink.await(MAX_UNCONSUMED).size());
+  }
+}
@@ -0,0 +1,101 @@
+package com.mqttv3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InflightControllerTest {
+  private static final long FAST = 1_000_000;
+  private static final long QUEUED = 10 * FAST;
+
+  private static void publish(InflightController inflight, long latencyNanos) {
+    assertTrue(inflight.tryAcquire(null));
+    inflight.release(latencyNanos);
+  }
+
+  @Test
+  public void fixedWindowWakesWaiterOnRelease() {
+    InflightController inflight = new InflightController(2, false);
+    final AtomicInteger woken = new AtomicInteger();
+    Runnable waiter = new Runnable() {
+      @Override
+      public void run() {
+        woken.incrementAndGet();
+      }
+    };
+    assertTrue(inflight.tryAcquire(waiter));
+    assertTrue(inflight.tryAcquire(waiter));
+    assertFalse(inflight.tryAcquire(waiter));
+    assertFalse(inflight.tryAcquire(waiter));
+    inflight.release(FAST);
+    // remembered once however often it asked
+    assertEquals(1, woken.get());
+    inflight.release(FAST);
+    assertEquals(1, woken.get());
+    assertEquals(2, inflight.getWindow());
+  }
+
+  @Test
+  public void growsByOnePerWindowOfFastAcknowledgements() {
+    InflightController inflight = new InflightController(8, true);
+    assertEquals(4, inflight.getWindow());
+    for (int i = 0; i < 4; i++) {
+      publish(inflight, FAST);
+    }
+    assertEquals(5, inflight.getWindow());
+    for (int i = 0; i < 5; i++) {
+      publish(inflight, FAST);
+    }
+    assertEquals(6, inflight.getWindow());
+    for (int i = 0; i < 100; i++) {
+      publish(inflight, FAST);
+    }
+    assertEquals(8, inflight.getWindow());
+  }
+
+  @Test
+  public void halvesOncePerWindowWhenQueueing() {
+    InflightController inflight = new InflightController(16, true);
+    for (int i = 0; i < 8; i++) {
+      publish(inflight, FAST);
+    }
+    assertEquals(9, inflight.getWindow());
+    publish(inflight, QUEUED);
+    assertEquals(4, inflight.getWindow());
+    // the rest of the 9 sent before shrinking report the same queue
+    for (int i = 0; i < 8; i++) {
+      publish(inflight, QUEUED);
+    }
+    assertEquals(4, inflight.getWindow());
+    publish(inflight, QUEUED);
+    assertEquals(2, inflight.getWindow());
+  }
+
+  @Test
+  public void unacknowledgedPublishesOnlyFreeTheSlot() {
+    InflightController inflight = new InflightController(8, true);
+    for (int i = 0; i < 100; i++) {
+      publish(inflight, -1);
+    }
+    assertEquals(4, inflight.getWindow());
+    for (int i = 0; i < 4; i++) {
+      assertTrue(inflight.tryAcquire(null));
+    }
+    assertFalse(inflight.tryAcquire(null));
+  }
+
+  @Test
+  public void rejectionShrinksAdaptiveWindowOnly() {
+    InflightController adaptive = new InflightController(8, true);
+    adaptive.rejected();
+    assertEquals(2, adaptive.getWindow());
+
+    InflightController fixed = new InflightController(8, false);
+    fixed.rejected();
+    assertEquals(8, fixed.getWindow());
+  }
+}
@@ -0,0 +1,128 @@
+package com.mqttv3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.internal.MqttPersistentData;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+public class JournalPersistenceTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static MqttPersistentData data(String key, byte[] header, byte[] payload) {
+    return new MqttPersistentData(key, header, 0, header.length, payload, 0, payload.length);
+  }
+
+  private JournalPersistence open() throws Exception {
+    JournalPersistence persistence = new JournalPersistence(folder.getRoot());
+    persistence.open("client", "tcp://broker:1883");
+    return persistence;
+  }
+
+  private File journal() {
+    // a compaction in progress writes a second file next to it
+    File[] files = folder.getRoot().listFiles();
+    for (File file : files) {
+      if (file.getName().endsWith(".journal")) {
+        return file;
+      }
+    }
+    throw new AssertionError("no journal in " + folder.getRoot());
+  }
+
+  @Test
+  public void replaysPutsAndRemoves() throws Exception {
+    JournalPersistence persistence = open();
+    persistence.put("a", data("a", new byte[]{1}, new byte[]{2, 3}));
+    persistence.put("b", data("b", new byte[]{4}, new byte[]{5}));
+    persistence.remove("a");
+    persistence.put("b", data("b", new byte[]{6}, new byte[]{7, 8}));
+    persistence.close();
+
+    persistence = open();
+    assertFalse(persistence.containsKey("a"));
+    MqttPersistable b = persistence.get("b");
+    assertArrayEquals(new byte[]{6}, b.getHeaderBytes());
+    assertArrayEquals(new byte[]{7, 8}, b.getPayloadBytes());
+    persistence.close();
+  }
+
+  @Test
+  public void dropsTornRecordAndKeepsAppending() throws Exception {
+    JournalPersistence persistence = open();
+    persistence.put("a", data("a", new byte[]{1, 2}, new byte[]{3, 4, 5}));
+    persistence.put("b", data("b", new byte[]{1, 2}, new byte[]{3, 4, 5}));
+    persistence.close();
+
+    // the header length of b, after a's 21 bytes, its length, type, key length and key
+    RandomAccessFile raf = new RandomAccessFile(journal(), "rw");
+    raf.seek(21 + 4 + 1 + 2 + 1);
+    raf.writeInt(Integer.MAX_VALUE);
+    raf.close();
+
+    persistence = open();
+    assertTrue(persistence.containsKey("a"));
+    assertFalse(persistence.containsKey("b"));
+    persistence.put("c", data("c", new byte[]{9}, new byte[0]));
+    persistence.close();
+
+    persistence = open();
+    assertTrue(persistence.containsKey("a"));
+    assertFalse(persistence.containsKey("b"));
+    assertArrayEquals(new byte[]{9}, persistence.get("c").getHeaderBytes());
+    persistence.close();
+  }
+
+  @Test
+  public void dropsRecordShorterThanItsKey() throws Exception {
+    JournalPersistence persistence = open();
+    persistence.put("a", data("a", new byte[]{1}, new byte[]{2}));
+    persistence.close();
+
+    // a record length too short for the key it claims
+    RandomAccessFile raf = new RandomAccessFile(journal(), "rw");
+    raf.seek(0);
+    raf.writeInt(3);
+    raf.close();
+
+    persistence = open();
+    assertNull(persistence.get("a"));
+    persistence.close();
+  }
+
+  @Test
+  public void compactsOverwrittenRecords() throws Exception {
+    JournalPersistence persistence = open();
+    byte[] payload = new byte[16 * 1024];
+    int puts = 0;
+    for (; puts < 64; puts++) {
+      payload[0] = (byte) puts;
+      persistence.put("a", data("a", new byte[]{1}, payload));
+    }
+    // records overwritten while a compaction runs are carried over, the next put compacts again
+    long deadline = System.currentTimeMillis() + 5000;
+    while (journal().length() > 256 * 1024 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      payload[0] = (byte) puts++;
+      persistence.put("a", data("a", new byte[]{1}, payload));
+    }
+    assertTrue(journal().length() <= 256 * 1024);
+    persistence.put("b", data("b", new byte[]{2}, new byte[0]));
+    persistence.close();
+
+    persistence = open();
+    assertEquals((byte) (puts - 1), persistence.get("a").getPayloadBytes()[0]);
+    assertTrue(persistence.containsKey("b"));
+    persistence.close();
+  }
+}
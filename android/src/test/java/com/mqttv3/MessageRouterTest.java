@@ -0,0 +1,77 @@
+package com.mqttv3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+public class MessageRouterTest {
+  private static int[] sorted(int[] ids) {
+    int[] copy = ids.clone();
+    Arrays.sort(copy);
+    return copy;
+  }
+
+  @Test
+  public void routesToFiltersAndCatchAll() {
+    MessageRouter router = new MessageRouter();
+    router.add("a/+", 1);
+    router.add("a/b", 2);
+    router.add(null, 3);
+    assertArrayEquals(new int[]{1, 2, 3}, sorted(router.route("a/b")));
+    assertArrayEquals(new int[]{1, 3}, sorted(router.route("a/c")));
+    assertArrayEquals(new int[]{3}, router.route("b"));
+  }
+
+  @Test
+  public void sharesRouteOfTopicUntilListenersChange() {
+    MessageRouter router = new MessageRouter();
+    router.add("a/#", 1);
+    int[] first = router.route("a/b");
+    assertSame(first, router.route("a/b"));
+
+    router.add("a/b", 2);
+    int[] second = router.route("a/b");
+    assertNotSame(first, second);
+    assertArrayEquals(new int[]{1, 2}, sorted(second));
+
+    router.remove("a/#", 1);
+    assertArrayEquals(new int[]{2}, router.route("a/b"));
+    router.remove("a/b", 2);
+    assertEquals(0, router.route("a/b").length);
+  }
+
+  @Test
+  public void routingSeenTopicDoesNotAllocate() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+    assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+    MessageRouter router = new MessageRouter();
+    router.add("sensors/+/state", 1);
+    router.add(null, 2);
+    String topic = "sensors/1/state";
+    // warm up, the first route of the topic fills the cache
+    for (int i = 0; i < 10000; i++) {
+      router.route(topic);
+    }
+    long thread = Thread.currentThread().getId();
+    long before = allocations.getThreadAllocatedBytes(thread);
+    int routed = 0;
+    for (int i = 0; i < 10000; i++) {
+      routed += router.route(topic).length;
+    }
+    long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+    assertEquals(20000, routed);
+    // a few bytes of slack for the measurement itself, one array per message would be 240 KB
+    assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+  }
+}
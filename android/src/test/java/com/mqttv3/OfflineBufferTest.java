@@ -0,0 +1,119 @@
+package com.mqttv3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.eclipse.paho.android.service.MqttAndroidClient;
+import org.eclipse.paho.client.mqttv3.DisconnectedBufferOptions;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OfflineBufferTest {
+  /**
+   * Paho's disconnected buffer as a list, counting how often a message was read back.
+   */
+  private static class BufferingClient extends MqttAndroidClient {
+    final List<MqttMessage> buffer = new ArrayList<>();
+    int reads;
+
+    BufferingClient() {
+      super(null, "tcp://broker:1883", "client");
+    }
+
+    @Override
+    public void setBufferOpts(DisconnectedBufferOptions bufferOpts) {
+    }
+
+    @Override
+    public int getBufferedMessageCount() {
+      return buffer.size();
+    }
+
+    @Override
+    public MqttMessage getBufferedMessage(int bufferIndex) {
+      reads++;
+      return buffer.get(bufferIndex);
+    }
+
+    @Override
+    public void deleteBufferedMessage(int bufferIndex) {
+      buffer.remove(bufferIndex);
+    }
+
+    boolean publish(OfflineBuffer offline, int bytes) {
+      if (!offline.reserve(this, bytes)) {
+        return false;
+      }
+      buffer.add(new MqttMessage(new byte[bytes]));
+      return true;
+    }
+  }
+
+  private static OfflineBuffer offlineBuffer(BufferingClient client, boolean deleteOldest) {
+    OfflineBuffer offline = new OfflineBuffer(null, "client", ClientOptions.OfflineBufferOptions.fromReadableMap(
+      JavaOnlyMap.of("maxBytes", 100.0, "deleteOldest", deleteOldest)));
+    offline.apply(client);
+    return offline;
+  }
+
+  @Test
+  public void refusesPastByteLimitWithoutReadingBuffer() {
+    BufferingClient client = new BufferingClient();
+    OfflineBuffer offline = offlineBuffer(client, false);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(client.publish(offline, 10));
+    }
+    assertFalse(client.publish(offline, 1));
+    assertEquals(10, client.buffer.size());
+    assertEquals(0, client.reads);
+  }
+
+  @Test
+  public void deletesOldestToMakeRoom() {
+    BufferingClient client = new BufferingClient();
+    OfflineBuffer offline = offlineBuffer(client, true);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(client.publish(offline, 10));
+    }
+    assertTrue(client.publish(offline, 25));
+    assertEquals(8, client.buffer.size());
+    assertEquals(25, client.buffer.get(7).getPayload().length);
+    assertFalse(client.publish(offline, 101));
+    assertEquals(0, client.reads);
+  }
+
+  @Test
+  public void forgetsWhatPahoSent() {
+    BufferingClient client = new BufferingClient();
+    OfflineBuffer offline = offlineBuffer(client, false);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(client.publish(offline, 10));
+    }
+    // sent from the head after a reconnect
+    client.buffer.subList(0, 4).clear();
+    for (int i = 0; i < 4; i++) {
+      assertTrue(client.publish(offline, 10));
+    }
+    assertFalse(client.publish(offline, 1));
+    assertEquals(0, client.reads);
+  }
+
+  @Test
+  public void sizesRestoredBufferOnce() {
+    BufferingClient client = new BufferingClient();
+    for (int i = 0; i < 5; i++) {
+      client.buffer.add(new MqttMessage(new byte[10]));
+    }
+    OfflineBuffer offline = offlineBuffer(client, false);
+    assertTrue(client.publish(offline, 50));
+    assertEquals(5, client.reads);
+    assertFalse(client.publish(offline, 1));
+    assertEquals(5, client.reads);
+  }
+}
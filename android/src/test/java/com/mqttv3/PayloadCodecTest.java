@@ -0,0 +1,86 @@
+package com.mqttv3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+
+public class PayloadCodecTest {
+  private static final byte[] DICTIONARY = "{\"temperature\":,\"humidity\":,\"device\":\"sensor-\"}".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] JSON = "{\"device\":\"sensor-1\",\"temperature\":21.5,\"humidity\":40,\"device\":\"sensor-1\"}".getBytes(StandardCharsets.UTF_8);
+
+  private static PayloadCodec codec() {
+    PayloadCodec codec = new PayloadCodec();
+    codec.addDictionary(1, DICTIONARY);
+    codec.addFilter("sensors/+/state", 1);
+    codec.addFilter("#", 2);
+    return codec;
+  }
+
+  @Test
+  public void roundTripsWithDictionary() throws DataFormatException {
+    PayloadCodec codec = codec();
+    byte[] encoded = codec.encode("sensors/1/state", JSON);
+    assertEquals(0x01, encoded[0]);
+    assertEquals(1, encoded[1]);
+    assertTrue(encoded.length < JSON.length);
+    assertArrayEquals(JSON, codec.decode("sensors/1/state", encoded));
+  }
+
+  @Test
+  public void firstDeclaredFilterWins() {
+    PayloadCodec codec = codec();
+    // both filters match, '#' comes out of the trie first but was declared last
+    assertEquals(1, codec.encode("sensors/1/state", JSON)[1]);
+    assertEquals(2, codec.encode("other/topic", JSON)[1]);
+  }
+
+  @Test
+  public void sendsIncompressiblePayloadRaw() throws DataFormatException {
+    PayloadCodec codec = codec();
+    byte[] random = new byte[64];
+    new Random(1).nextBytes(random);
+    byte[] encoded = codec.encode("sensors/1/state", random);
+    assertEquals(0x00, encoded[0]);
+    assertArrayEquals(random, Arrays.copyOfRange(encoded, 1, encoded.length));
+    assertArrayEquals(random, codec.decode("sensors/1/state", encoded));
+  }
+
+  @Test
+  public void leavesOtherTopicsUntouched() throws DataFormatException {
+    PayloadCodec codec = new PayloadCodec();
+    codec.addFilter("sensors/#", 0);
+    assertSame(JSON, codec.encode("lights/1", JSON));
+    assertSame(JSON, codec.decode("lights/1", JSON));
+  }
+
+  @Test
+  public void keepsEmptyPayloadEmpty() throws DataFormatException {
+    PayloadCodec codec = codec();
+    byte[] empty = new byte[0];
+    assertEquals(0, codec.encode("sensors/1/state", empty).length);
+    assertEquals(0, codec.decode("sensors/1/state", codec.encode("sensors/1/state", empty)).length);
+  }
+
+  @Test(expected = DataFormatException.class)
+  public void rejectsTruncatedPayload() throws DataFormatException {
+    PayloadCodec codec = codec();
+    byte[] encoded = codec.encode("sensors/1/state", JSON);
+    codec.decode("sensors/1/state", Arrays.copyOf(encoded, encoded.length - 4));
+  }
+
+  @Test(expected = DataFormatException.class)
+  public void rejectsUnknownDictionary() throws DataFormatException {
+    byte[] encoded = codec().encode("sensors/1/state", JSON);
+    PayloadCodec receiver = new PayloadCodec();
+    receiver.addFilter("sensors/+/state", 1);
+    receiver.decode("sensors/1/state", encoded);
+  }
+}
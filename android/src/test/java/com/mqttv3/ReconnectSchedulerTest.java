@@ -0,0 +1,178 @@
+package com.mqttv3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.Nullable;
+
+import org.eclipse.paho.android.service.MqttAndroidClient;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ReconnectSchedulerTest {
+  private static final MqttException REFUSED = new MqttException(MqttException.REASON_CODE_SERVER_CONNECT_ERROR);
+  private static final MqttException IN_PROGRESS = new MqttException(MqttException.REASON_CODE_CONNECT_IN_PROGRESS);
+
+  /**
+   * Answers connects with the given outcomes in order, null for success, and fails once they run out.
+   */
+  private static class ScriptedClient extends MqttAndroidClient {
+    private final LinkedList<MqttException> outcomes;
+
+    ScriptedClient(MqttException... outcomes) {
+      super(null, "tcp://broker:1883", "client");
+      this.outcomes = new LinkedList<>(Arrays.asList(outcomes));
+    }
+
+    @Override
+    public IMqttToken connect(MqttConnectOptions options, Object userContext, IMqttActionListener callback) {
+      MqttException outcome = outcomes.isEmpty() ? REFUSED : outcomes.removeFirst();
+      if (outcome == null) {
+        callback.onSuccess(null);
+      } else {
+        callback.onFailure(null, outcome);
+      }
+      return null;
+    }
+  }
+
+  private static class Event {
+    final String state;
+    final int attempt;
+    final long delayMs;
+
+    Event(String state, int attempt, long delayMs) {
+      this.state = state;
+      this.attempt = attempt;
+      this.delayMs = delayMs;
+    }
+  }
+
+  private static class Recorder implements ReconnectScheduler.Listener {
+    final List<Event> events = new ArrayList<>();
+    final String until;
+    final CountDownLatch done = new CountDownLatch(1);
+
+    Recorder(String until) {
+      this.until = until;
+    }
+
+    @Override
+    public synchronized void onStateChange(String state, int attempt, long delayMs, @Nullable String error) {
+      events.add(new Event(state, attempt, delayMs));
+      if (state.equals(until)) {
+        done.countDown();
+      }
+    }
+
+    synchronized List<Event> events() {
+      return new ArrayList<>(events);
+    }
+
+    synchronized List<String> states() {
+      List<String> states = new ArrayList<>();
+      for (Event event : events) {
+        states.add(event.state);
+      }
+      return states;
+    }
+  }
+
+  private static ReconnectScheduler scheduler(MqttAndroidClient client, Recorder recorder, int breakerFailures) {
+    ClientOptions options = new ClientOptions();
+    options.setReconnectPeriod(4);
+    options.setMaxReconnectDelay(16);
+    options.setBreakerFailures(breakerFailures);
+    options.setBreakerCooldown(20);
+    ReconnectScheduler scheduler = new ReconnectScheduler(client, recorder);
+    scheduler.configure(new MqttConnectOptions(), options);
+    return scheduler;
+  }
+
+  @Test
+  public void jittersBelowCappedBackoff() throws InterruptedException {
+    Recorder recorder = new Recorder(ReconnectScheduler.CONNECTED);
+    ReconnectScheduler scheduler = scheduler(new ScriptedClient(REFUSED, REFUSED, REFUSED, REFUSED, REFUSED, null), recorder, 0);
+    scheduler.connectionLost();
+    assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+
+    int waits = 0;
+    for (Event event : recorder.events()) {
+      if (event.state.equals(ReconnectScheduler.WAITING)) {
+        long cap = Math.min(16, 4L << (event.attempt - 1));
+        assertTrue(event.delayMs + " ms before attempt " + event.attempt, event.delayMs >= 0 && event.delayMs < cap);
+        waits++;
+      }
+    }
+    assertEquals(6, waits);
+    List<Event> events = recorder.events();
+    assertEquals(6, events.get(events.size() - 1).attempt);
+  }
+
+  @Test
+  public void opensBreakerAfterConsecutiveFailures() throws InterruptedException {
+    Recorder recorder = new Recorder(ReconnectScheduler.CONNECTED);
+    ReconnectScheduler scheduler = scheduler(new ScriptedClient(REFUSED, REFUSED, REFUSED, null), recorder, 3);
+    scheduler.connectionLost();
+    assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+
+    List<String> states = recorder.states();
+    int open = states.indexOf(ReconnectScheduler.OPEN);
+    assertEquals(3, countOf(states.subList(0, open), ReconnectScheduler.FAILED));
+    assertEquals(ReconnectScheduler.FAILED, states.get(open - 1));
+    assertEquals(ReconnectScheduler.HALF_OPEN, states.get(open + 1));
+    assertEquals(ReconnectScheduler.CONNECTED, states.get(open + 2));
+    assertEquals(20, recorder.events().get(open).delayMs);
+  }
+
+  @Test
+  public void connectInProgressIsNeitherSuccessNorFailure() throws InterruptedException {
+    Recorder recorder = new Recorder(ReconnectScheduler.CONNECTED);
+    ReconnectScheduler scheduler = scheduler(new ScriptedClient(IN_PROGRESS, IN_PROGRESS, null), recorder, 1);
+    scheduler.connectionLost();
+    assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+
+    List<String> states = recorder.states();
+    assertFalse(states.contains(ReconnectScheduler.FAILED));
+    assertFalse(states.contains(ReconnectScheduler.OPEN));
+    List<Event> events = recorder.events();
+    // the attempts that found a connect running are taken again under the same number
+    for (Event event : events) {
+      assertEquals(1, event.attempt);
+    }
+  }
+
+  @Test
+  public void stopCancelsPendingAttempt() throws InterruptedException {
+    Recorder recorder = new Recorder(ReconnectScheduler.STOPPED);
+    ClientOptions options = new ClientOptions();
+    options.setReconnectPeriod(60000);
+    ReconnectScheduler scheduler = new ReconnectScheduler(new ScriptedClient(), recorder);
+    scheduler.configure(new MqttConnectOptions(), options);
+    scheduler.connectionLost();
+    scheduler.stop();
+    assertTrue(recorder.done.await(1, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList(ReconnectScheduler.WAITING, ReconnectScheduler.STOPPED), recorder.states());
+  }
+
+  private static int countOf(List<String> states, String state) {
+    int count = 0;
+    for (String s : states) {
+      if (s.equals(state)) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
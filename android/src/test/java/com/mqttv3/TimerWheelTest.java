@@ -0,0 +1,85 @@
+package com.mqttv3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TimerWheelTest {
+  private static Runnable countDown(final CountDownLatch latch) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    };
+  }
+
+  private static Runnable increment(final AtomicInteger counter) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        counter.incrementAndGet();
+      }
+    };
+  }
+
+  @Test
+  public void runsAfterDelay() throws InterruptedException {
+    TimerWheel wheel = new TimerWheel(10, 8);
+    CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+    wheel.schedule(countDown(latch), 50);
+    assertTrue(latch.await(2, TimeUnit.SECONDS));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 40);
+    wheel.close();
+  }
+
+  @Test
+  public void waitsRoundsBeyondWheelSize() throws InterruptedException {
+    // 4 buckets of 10 ms, a 100 ms delay goes around the wheel twice before running
+    TimerWheel wheel = new TimerWheel(10, 4);
+    CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+    wheel.schedule(countDown(latch), 100);
+    assertTrue(latch.await(2, TimeUnit.SECONDS));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+    wheel.close();
+  }
+
+  @Test
+  public void cancelledTimeoutNeverRuns() throws InterruptedException {
+    TimerWheel wheel = new TimerWheel(10, 8);
+    AtomicInteger runs = new AtomicInteger();
+    CountDownLatch later = new CountDownLatch(1);
+    TimerWheel.Timeout timeout = wheel.schedule(increment(runs), 20);
+    wheel.schedule(countDown(later), 60);
+    assertTrue(timeout.cancel());
+    assertFalse(timeout.cancel());
+    assertTrue(later.await(2, TimeUnit.SECONDS));
+    assertEquals(0, runs.get());
+    wheel.close();
+  }
+
+  @Test
+  public void closeDropsPendingTimeouts() throws InterruptedException {
+    TimerWheel wheel = new TimerWheel(10, 8);
+    AtomicInteger runs = new AtomicInteger();
+    TimerWheel.Timeout timeout = wheel.schedule(increment(runs), 20);
+    wheel.close();
+    Thread.sleep(100);
+    assertEquals(0, runs.get());
+    assertFalse(timeout.cancel());
+
+    // the wheel ticks again once something new is scheduled
+    CountDownLatch latch = new CountDownLatch(1);
+    wheel.schedule(countDown(latch), 20);
+    assertTrue(latch.await(2, TimeUnit.SECONDS));
+    wheel.close();
+  }
+}
@@ -0,0 +1,89 @@
+package com.mqttv3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class TopicTrieTest {
+  private static Set<String> match(TopicTrie<String> trie, String topic) {
+    Set<String> out = new HashSet<>();
+    trie.match(topic, out);
+    return out;
+  }
+
+  private static Set<String> setOf(String... values) {
+    return new HashSet<>(Arrays.asList(values));
+  }
+
+  private static TopicTrie<String> trie(String... filters) {
+    TopicTrie<String> trie = new TopicTrie<>();
+    for (String filter : filters) {
+      trie.add(filter, filter);
+    }
+    return trie;
+  }
+
+  @Test
+  public void matchesExactAndWildcardFilters() {
+    TopicTrie<String> trie = trie("a/b/c", "a/+/c", "a/#", "+/b/+", "#", "a/b");
+    assertEquals(setOf("a/b/c", "a/+/c", "a/#", "+/b/+", "#"), match(trie, "a/b/c"));
+    assertEquals(setOf("a/+/c", "a/#", "#"), match(trie, "a/x/c"));
+    assertEquals(setOf("a/#", "#", "a/b"), match(trie, "a/b"));
+    assertEquals(setOf("#"), match(trie, "b/b"));
+  }
+
+  @Test
+  public void multiLevelWildcardMatchesParentLevel() {
+    TopicTrie<String> trie = trie("a/#");
+    assertEquals(setOf("a/#"), match(trie, "a"));
+    assertEquals(setOf("a/#"), match(trie, "a/b/c/d"));
+    assertTrue(match(trie, "ab").isEmpty());
+  }
+
+  @Test
+  public void singleLevelWildcardMatchesEmptyLevel() {
+    TopicTrie<String> trie = trie("a/+/c", "+");
+    assertEquals(setOf("a/+/c"), match(trie, "a//c"));
+    assertEquals(setOf("+"), match(trie, ""));
+    assertTrue(match(trie, "a/b").isEmpty());
+  }
+
+  @Test
+  public void firstLevelWildcardsSkipSystemTopics() {
+    TopicTrie<String> trie = trie("#", "+/broker/load", "$SYS/#", "$SYS/+/load");
+    assertEquals(setOf("$SYS/#", "$SYS/+/load"), match(trie, "$SYS/broker/load"));
+    assertEquals(setOf("#", "+/broker/load"), match(trie, "SYS/broker/load"));
+  }
+
+  @Test
+  public void removePrunesEmptyBranches() {
+    TopicTrie<String> trie = new TopicTrie<>();
+    trie.add("a/+", "one");
+    trie.add("a/+", "two");
+    assertTrue(trie.remove("a/+", "one"));
+    assertFalse(trie.remove("a/+", "one"));
+    assertFalse(trie.remove("a/b/c", "two"));
+    assertEquals(setOf("two"), match(trie, "a/b"));
+    assertTrue(trie.remove("a/+", "two"));
+    assertTrue(trie.isEmpty());
+    assertTrue(match(trie, "a/b").isEmpty());
+  }
+
+  @Test
+  public void singleFilterMatchesLikeTheTrie() {
+    String[] filters = {"a/b/c", "a/+/c", "a/#", "+/b/+", "#", "a/b", "+", "a/+", "$SYS/#", "+/+", "a//c"};
+    String[] topics = {"a/b/c", "a/x/c", "a/b", "a", "b/b", "a//c", "", "$SYS/broker", "ab", "a/b/c/d", "/"};
+    for (String filter : filters) {
+      TopicTrie<String> trie = trie(filter);
+      for (String topic : topics) {
+        assertEquals(filter + " on " + topic, !match(trie, topic).isEmpty(), TopicTrie.matches(filter, topic));
+      }
+    }
+  }
+}
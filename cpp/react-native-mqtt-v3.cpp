@@ -0,0 +1,160 @@
+#include "react-native-mqtt-v3.h"
+
+#include <memory>
+#include <unordered_map>
+#include <utility>
+
+using namespace facebook;
+
+namespace mqttv3 {
+
+static const char *const GLOBAL_NAME = "__mqttV3Binary";
+
+// Lives on the JS global, so its lifetime is bound to the runtime and every member is only ever
+// touched on the JS thread.
+class BinaryHostObject : public jsi::HostObject, public std::enable_shared_from_this<BinaryHostObject> {
+public:
+  explicit BinaryHostObject(PublishHandler publishHandler) : publishHandler_(std::move(publishHandler)) {}
+
+  jsi::Value get(jsi::Runtime &runtime, const jsi::PropNameID &name) override {
+    std::string property = name.utf8(runtime);
+    std::shared_ptr<BinaryHostObject> self = shared_from_this();
+    if (property == "publish") {
+      return jsi::Function::createFromHostFunction(
+          runtime, name, 5,
+          [self](jsi::Runtime &rt, const jsi::Value &, const jsi::Value *args, size_t count) -> jsi::Value {
+            return self->publish(rt, args, count);
+          });
+    }
+    if (property == "setMessageHandler") {
+      return jsi::Function::createFromHostFunction(
+          runtime, name, 2,
+          [self](jsi::Runtime &rt, const jsi::Value &, const jsi::Value *args, size_t count) -> jsi::Value {
+            if (count < 1 || !args[0].isString()) {
+              throw jsi::JSError(rt, "setMessageHandler(clientId, handler) expects a clientId");
+            }
+            std::string clientId = args[0].asString(rt).utf8(rt);
+            if (count < 2 || !args[1].isObject() || !args[1].asObject(rt).isFunction(rt)) {
+              self->messageHandlers_.erase(clientId);
+            } else {
+              self->messageHandlers_[clientId] =
+                  std::make_shared<jsi::Function>(args[1].asObject(rt).asFunction(rt));
+            }
+            return jsi::Value::undefined();
+          });
+    }
+    return jsi::Value::undefined();
+  }
+
+  void dispatchMessage(jsi::Runtime &runtime, const std::string &clientId, const std::string &topic, size_t length,
+                       const PayloadWriter &writer) {
+    auto it = messageHandlers_.find(clientId);
+    if (it == messageHandlers_.end()) {
+      return;
+    }
+    std::shared_ptr<jsi::Function> handler = it->second;
+    jsi::Function arrayBufferConstructor = runtime.global().getPropertyAsFunction(runtime, "ArrayBuffer");
+    jsi::Object bufferObject =
+        arrayBufferConstructor.callAsConstructor(runtime, static_cast<double>(length)).asObject(runtime);
+    jsi::ArrayBuffer buffer = bufferObject.getArrayBuffer(runtime);
+    if (length > 0) {
+      writer(buffer.data(runtime));
+    }
+    try {
+      handler->call(runtime, jsi::String::createFromUtf8(runtime, topic), std::move(bufferObject));
+    } catch (const jsi::JSError &) {
+      // Swallow the exception, a failing listener must not take the client down.
+    }
+  }
+
+  void settlePublish(jsi::Runtime &runtime, int requestId, const char *error) {
+    auto it = pendingPublishes_.find(requestId);
+    if (it == pendingPublishes_.end()) {
+      return;
+    }
+    PendingPublish pending = std::move(it->second);
+    pendingPublishes_.erase(it);
+    if (error == nullptr) {
+      pending.resolve->asObject(runtime).asFunction(runtime).call(runtime);
+    } else {
+      jsi::Function errorConstructor = runtime.global().getPropertyAsFunction(runtime, "Error");
+      jsi::Value reason = errorConstructor.callAsConstructor(runtime, jsi::String::createFromUtf8(runtime, error));
+      pending.reject->asObject(runtime).asFunction(runtime).call(runtime, std::move(reason));
+    }
+  }
+
+private:
+  struct PendingPublish {
+    std::shared_ptr<jsi::Value> resolve;
+    std::shared_ptr<jsi::Value> reject;
+  };
+
+  jsi::Value publish(jsi::Runtime &runtime, const jsi::Value *args, size_t count) {
+    if (count < 3 || !args[0].isString() || !args[1].isString() || !args[2].isObject() ||
+        !args[2].asObject(runtime).isArrayBuffer(runtime)) {
+      throw jsi::JSError(runtime, "publish(clientId, topic, payload: ArrayBuffer, qos, retained)");
+    }
+    std::string clientId = args[0].asString(runtime).utf8(runtime);
+    std::string topic = args[1].asString(runtime).utf8(runtime);
+    jsi::ArrayBuffer payload = args[2].asObject(runtime).getArrayBuffer(runtime);
+    int qos = count > 3 && args[3].isNumber() ? static_cast<int>(args[3].asNumber()) : 1;
+    bool retained = count > 4 && args[4].isBool() && args[4].getBool();
+
+    int requestId = nextRequestId_++;
+    std::shared_ptr<BinaryHostObject> self = shared_from_this();
+    jsi::Function executor = jsi::Function::createFromHostFunction(
+        runtime, jsi::PropNameID::forAscii(runtime, "executor"), 2,
+        [self, requestId](jsi::Runtime &rt, const jsi::Value &, const jsi::Value *executorArgs,
+                          size_t) -> jsi::Value {
+          self->pendingPublishes_[requestId] = {std::make_shared<jsi::Value>(rt, executorArgs[0]),
+                                                std::make_shared<jsi::Value>(rt, executorArgs[1])};
+          return jsi::Value::undefined();
+        });
+    jsi::Function promiseConstructor = runtime.global().getPropertyAsFunction(runtime, "Promise");
+    jsi::Value promise = promiseConstructor.callAsConstructor(runtime, std::move(executor));
+    publishHandler_(requestId, clientId, topic, payload.data(runtime), payload.size(runtime), qos, retained);
+    return promise;
+  }
+
+  PublishHandler publishHandler_;
+  std::unordered_map<std::string, std::shared_ptr<jsi::Function>> messageHandlers_;
+  std::unordered_map<int, PendingPublish> pendingPublishes_;
+  int nextRequestId_ = 0;
+};
+
+static std::shared_ptr<BinaryHostObject> getHostObject(jsi::Runtime &runtime) {
+  jsi::Value value = runtime.global().getProperty(runtime, GLOBAL_NAME);
+  if (!value.isObject()) {
+    return nullptr;
+  }
+  jsi::Object object = value.asObject(runtime);
+  if (!object.isHostObject<BinaryHostObject>(runtime)) {
+    return nullptr;
+  }
+  return object.getHostObject<BinaryHostObject>(runtime);
+}
+
+void install(jsi::Runtime &runtime, PublishHandler publishHandler) {
+  if (getHostObject(runtime) != nullptr) {
+    return;
+  }
+  auto hostObject = std::make_shared<BinaryHostObject>(std::move(publishHandler));
+  runtime.global().setProperty(runtime, GLOBAL_NAME, jsi::Object::createFromHostObject(runtime, hostObject));
+}
+
+void dispatchMessage(jsi::Runtime &runtime, const std::string &clientId, const std::string &topic, size_t length,
+                     const PayloadWriter &writer) {
+  std::shared_ptr<BinaryHostObject> hostObject = getHostObject(runtime);
+  if (hostObject != nullptr) {
+    hostObject->dispatchMessage(runtime, clientId, topic, length, writer);
+  }
+}
+
+void settlePublish(jsi::Runtime &runtime, int requestId, const char *error) {
+  std::shared_ptr<BinaryHostObject> hostObject = getHostObject(runtime);
+  if (hostObject != nullptr) {
+    hostObject->settlePublish(runtime, requestId, error);
+  }
+}
+
+} // namespace mqttv3
@@ -0,0 +1,34 @@
+#ifndef MQTTV3_H
+#define MQTTV3_H
+
+#include <jsi/jsi.h>
+
+#include <cstddef>
+#include <cstdint>
+#include <functional>
+#include <string>
+
+namespace mqttv3 {
+
+// Hands an outgoing binary publish to the platform. The payload pointer is only valid for the
+// duration of the call.
+using PublishHandler = std::function<void(int requestId, const std::string &clientId, const std::string &topic,
+                                          const uint8_t *payload, size_t length, int qos, bool retained)>;
+
+// Copies an incoming payload into the ArrayBuffer storage handed to it.
+using PayloadWriter = std::function<void(uint8_t *destination)>;
+
+// Installs `global.__mqttV3Binary` into the runtime.
+void install(facebook::jsi::Runtime &runtime, PublishHandler publishHandler);
+
+// Delivers a message to the handler registered for the client. Must be called on the JS thread.
+void dispatchMessage(facebook::jsi::Runtime &runtime, const std::string &clientId, const std::string &topic,
+                     size_t length, const PayloadWriter &writer);
+
+// Settles the promise returned by a binary publish. A null error resolves it. Must be called on
+// the JS thread.
+void settlePublish(facebook::jsi::Runtime &runtime, int requestId, const char *error);
+
+} // namespace mqttv3
+
+#endif // MQTTV3_H
@@ -24,6 +24,41 @@ const MqttV3 = NativeModules.MqttV3
 
 const mqttV3EventEmitter = new NativeEventEmitter(MqttV3);
 
+interface MqttV3Binary {
+  publish: (
+    clientId: string,
+    topic: string,
+    payload: ArrayBuffer,
+    qos: number,
+    retained: boolean
+  ) => Promise<void>;
+  setMessageHandler: (
+    clientId: string,
+    handler: ((topic: string, payload: ArrayBuffer) => void) | null
+  ) => void;
+}
+
+declare global {
+  // installed by MqttV3.installBinary(), see cpp/react-native-mqtt-v3.cpp
+  var __mqttV3Binary: MqttV3Binary | undefined;
+}
+
+function getBinaryBridge(): MqttV3Binary {
+  if (
+    globalThis.__mqttV3Binary == null &&
+    typeof MqttV3.installBinary === 'function'
+  ) {
+    MqttV3.installBinary();
+  }
+  const bridge = globalThis.__mqttV3Binary;
+  if (bridge == null) {
+    throw new Error(
+      'Binary payloads require the new architecture (newArchEnabled=true).'
+    );
+  }
+  return bridge;
+}
+
 export declare type QoS = 0 | 1 | 2;
 
 export interface MqttOptions {
@@ -33,6 +68,32 @@ export interface MqttOptions {
   clientId: string;
   host: string; // host does NOT include port
   port: number; // port is made into a number subsequently
+  /**
+   * more brokers of the same cluster, tried after host and port when those can't be reached. Android only.
+   */
+  servers?: Array<{ host: string; port?: number }>;
+  /**
+   * false, connect to all resolved IPv6 and IPv4 addresses in parallel, staggered by happyEyeballsDelay,
+   * and keep the first connection, so a broken address family doesn't stall until the connect timeout. Android only.
+   */
+  happyEyeballs?: boolean;
+  /**
+   * 250 milliseconds between starting two connection attempts
+   */
+  happyEyeballsDelay?: number;
+  /**
+   * probe host and servers with parallel TCP connects before connecting and try the fastest first. Android only.
+   */
+  serverProbe?: {
+    /**
+     * 2000 milliseconds, brokers not reached by then are tried last
+     */
+    timeoutMs?: number;
+    /**
+     * 60000 milliseconds, how long a ranking is reused before probing again
+     */
+    cacheMs?: number;
+  };
   /**
    * default QoS
    */
@@ -71,9 +132,24 @@ export interface MqttOptions {
    */
   automaticReconnect?: boolean;
   /**
-   * 1000 milliseconds, interval between two reconnections
+   * 1000 milliseconds, the first reconnect delay, doubled after every failed attempt.
+   * Each delay is drawn at random between 0 and the backoff so clients don't reconnect in lock-step.
    */
   reconnectPeriod?: number;
+  /**
+   * 128000 milliseconds, the most the reconnect backoff grows to. Android only.
+   */
+  maxReconnectDelay?: number;
+  /**
+   * pause reconnecting after this many consecutive failures, then try once more after cooldownMs. Android only.
+   */
+  circuitBreaker?: {
+    failures: number;
+    /**
+     * 60000 milliseconds
+     */
+    cooldownMs?: number;
+  };
 
   /**
    * optional cert chains in p12 format, base64 encoding, 3DES_CBC for keys, RC2_CBC for certs
@@ -91,6 +167,133 @@ export interface MqttOptions {
    * false, set true do not check that the server certificate
    */
   insecure?: boolean;
+  /**
+   * false, set true to receive messages as ArrayBuffer through onBinaryMessage instead of base64 through onMessage.
+   * Requires the new architecture.
+   */
+  binary?: boolean;
+  /**
+   * 0 milliseconds, set above 0 to coalesce messages arriving within the window into one onMessages event
+   */
+  batchWindow?: number;
+  /**
+   * 100, the most messages in one onMessages event, a full batch is delivered without waiting for the window
+   */
+  batchSize?: number;
+  /**
+   * 1000, messages held natively while JS is busy
+   */
+  inboundQueueSize?: number;
+  /**
+   * dropOldest, what to do with a message arriving at a full inbound queue:
+   * dropOldest / dropNewest discard a message, block stops reading from the socket until JS catches up,
+   * spill writes it to a file in the cache directory
+   */
+  inboundOverflow?: 'dropOldest' | 'dropNewest' | 'block' | 'spill';
+  /**
+   * 100, the most topics sent in one SUBSCRIBE / UNSUBSCRIBE packet by subscribeMany and unsubscribeMany
+   */
+  subscribeChunkSize?: number;
+  /**
+   * warn, native log output, levels below it are skipped without formatting the message
+   */
+  logLevel?: 'debug' | 'info' | 'warn' | 'error' | 'none';
+  /**
+   * 1, with logLevel debug trace only one message in logSampleRate, e.g. 1000 in production
+   */
+  logSampleRate?: number;
+  /**
+   * false, ssl / wss only: share a TLS session cache across reconnects, prefer TLS 1.3 and session tickets,
+   * and report every handshake through onTlsHandshake
+   */
+  tlsResumption?: boolean;
+  /**
+   * 32, sessions kept in the shared cache with tlsResumption
+   */
+  tlsSessionCacheSize?: number;
+  /**
+   * 86400, seconds a cached session may be resumed with tlsResumption
+   */
+  tlsSessionTimeout?: number;
+  /**
+   * memory, where QoS 1 / 2 messages in flight are kept: memory is lost with the process,
+   * file is paho's file per message, journal is an append-only memory-mapped file per client
+   */
+  persistence?: 'memory' | 'file' | 'journal';
+  /**
+   * deflate payloads natively on matching topics, both publisher and subscriber need the same configuration.
+   * Android only.
+   */
+  compression?: {
+    /**
+     * preset dictionaries by id (0 - 255), base64 encoded, e.g. a sample document with the common keys
+     */
+    dictionaries?: { [id: number]: string };
+    /**
+     * the first matching filter decides the dictionary, an id without dictionary is plain deflate
+     */
+    topics: { filter: string; dictionaryId?: number }[];
+  };
+  /**
+   * drop QoS 1 / 2 messages the broker delivers again with the DUP flag within the window,
+   * e.g. redelivered after a reconnect. Android only.
+   */
+  dedup?: {
+    /**
+     * payload, what identifies a message on a topic: the whole payload, or a dot separated path
+     * to a field of a JSON payload such as 'meta.id'; messages without that field are never dropped
+     */
+    key?: string;
+    /**
+     * 60000
+     */
+    windowMs?: number;
+    /**
+     * 1024, messages remembered
+     */
+    capacity?: number;
+    /**
+     * false, also drop messages without the DUP flag that repeat one seen within the window.
+     * A publisher sending the same value twice, e.g. a sensor reading or an 'ON' command, is dropped too,
+     * so only enable it with a key unique per message.
+     */
+    dropRepeats?: boolean;
+  };
+  /**
+   * 10, QoS 1 and 2 messages sent but not yet acknowledged by the broker
+   */
+  maxInflight?: number;
+  /**
+   * false, let publishMany start at half of maxInflight and adapt its window to the PUBACK latency,
+   * growing while the broker keeps up and halving when acknowledgements slow down. Android only.
+   */
+  adaptiveInflight?: boolean;
+  /**
+   * 0, keep the last message of up to this many topics natively for getSnapshot, Android only
+   */
+  retainedCacheSize?: number;
+  /**
+   * keep publishes made while the connection is lost and send them once it is back, Android only.
+   * Publishes before the first connect are still rejected.
+   */
+  offlineBuffer?: {
+    /**
+     * 5000
+     */
+    maxMessages?: number;
+    /**
+     * total payload bytes, unlimited by default
+     */
+    maxBytes?: number;
+    /**
+     * false, when full drop the oldest message instead of rejecting the publish
+     */
+    deleteOldest?: boolean;
+    /**
+     * false, also write buffered messages to the client persistence, e.g. persistence: 'journal'
+     */
+    persist?: boolean;
+  };
   /**
    * a message that will sent by the broker automatically when the client disconnect badly.
    */
@@ -114,35 +317,402 @@ export interface MqttOptions {
   };
 }
 
+export interface InboundStats {
+  /**
+   * messages waiting in memory
+   */
+  depth: number;
+  /**
+   * messages waiting on disk, only with inboundOverflow spill
+   */
+  spilled: number;
+  capacity: number;
+  /**
+   * messages discarded since the client was created
+   */
+  dropped: number;
+}
+
+export interface LatencyHistogram {
+  /**
+   * upper bound of each bucket in milliseconds, counts has one more entry for everything above the last bound
+   */
+  bounds: number[];
+  counts: number[];
+  count: number;
+  meanMs: number;
+}
+
+export interface ClientStats {
+  messagesIn: number;
+  bytesIn: number;
+  messagesOut: number;
+  bytesOut: number;
+  publishesPending: number;
+  publishesCompleted: number;
+  publishesFailed: number;
+  reconnects: number;
+  state: 'CREATED' | 'CONNECTING' | 'CONNECTED' | 'DISCONNECTING' | 'CLOSED';
+  /**
+   * QoS 1 / 2 messages looked up by dedup
+   */
+  dedupChecked: number;
+  /**
+   * messages dropped by dedup as duplicates
+   */
+  dedupSuppressed: number;
+  /**
+   * messages replaced by a newer one of the same topic on a subscription with conflateMs
+   */
+  conflated: number;
+  /**
+   * inbound messages discarded by the inbound queue
+   */
+  dropped: number;
+  /**
+   * QoS 1 and 2 messages sent but not yet acknowledged by the broker
+   */
+  inFlight: number;
+  /**
+   * messages publishMany may have in flight, below maxInflight while adaptiveInflight shrank it
+   */
+  inflightWindow: number;
+  /**
+   * publish until the broker acknowledged it
+   */
+  publishLatency: LatencyHistogram;
+  /**
+   * message arrival until it is emitted to JS
+   */
+  deliveryLatency: LatencyHistogram;
+}
+
+/**
+ * how payloads of a subscription are delivered to onMessage, Android only.
+ * json parses the payload natively into message.payload, leaving base64Message empty,
+ * a payload that isn't JSON arrives as base64 with the reason in payloadError.
+ */
+export type PayloadFormat = 'base64' | 'json';
+
+export interface SubscribeOptions {
+  /**
+   * 'base64'
+   */
+  payloadFormat?: PayloadFormat;
+  /**
+   * deliver at most one message per topic in this many milliseconds, the latest one, Android only
+   */
+  conflateMs?: number;
+}
+
+export interface SubscribeRequest extends SubscribeOptions {
+  topic: string;
+  qos?: number;
+}
+
+export interface SubscribeResult {
+  topic: string;
+  /**
+   * the granted QoS, 128 when the broker refused the subscription or the packet failed
+   */
+  qos: number;
+  error?: string;
+}
+
+export interface UnsubscribeResult {
+  topic: string;
+  ok: boolean;
+  error?: string;
+}
+
+export interface PublishRequest {
+  topic: string;
+  base64Body: string;
+  qos?: number;
+  retained?: boolean;
+}
+
+export interface RequestOptions {
+  /**
+   * replies are expected on replyTopic/<correlationId>, the request is published to topic/<correlationId>
+   */
+  replyTopic: string;
+  /**
+   * 10000
+   */
+  timeoutMs?: number;
+  qos?: number;
+}
+
+export interface PublishResult {
+  topic: string;
+  ok: boolean;
+  /**
+   * why the message was not published, only when ok is false
+   */
+  error?: string;
+}
+
 type ListenerSubscription = Pick<EventSubscription, 'remove'>;
 type ConnectListener = () => void;
 type DisconnectListener = (event: { message: string }) => void;
-type MessageListener = (event: {
+type Message = {
   topic: string;
   base64Message: string;
+  /**
+   * the parsed payload of a subscription with payloadFormat json
+   */
+  payload?: unknown;
+  /**
+   * why the payload of a subscription with payloadFormat json couldn't be parsed
+   */
+  payloadError?: string;
+};
+export type SnapshotMessage = Message & {
+  qos: number;
+  retained: boolean;
+};
+type RoutedMessage = Message & {
+  /**
+   * the listeners whose filters matched, resolved natively
+   */
+  listenerIds?: number[];
+};
+type MessageListener = (event: Message) => void;
+type MessagesListener = (messages: Message[]) => void;
+type TlsHandshakeListener = (event: {
+  /**
+   * a cached session was resumed instead of a full handshake, reliable up to TLS 1.2 only, a
+   * resumed TLS 1.3 handshake can report false
+   */
+  resumed: boolean;
+  protocol: string;
+  cipherSuite: string;
+  /**
+   * from socket creation to the end of the handshake
+   */
+  elapsedMs: number;
+}) => void;
+type BufferDrainListener = (event: {
+  remaining: number;
+  total: number;
+}) => void;
+type ReconnectListener = (event: {
+  /**
+   * waiting for the next attempt, connecting, connected, failed, open while the circuit breaker pauses,
+   * halfOpen for the attempt after the pause, stopped by disconnect or close
+   */
+  state:
+    | 'waiting'
+    | 'connecting'
+    | 'connected'
+    | 'failed'
+    | 'open'
+    | 'halfOpen'
+    | 'stopped';
+  attempt: number;
+  /**
+   * until the next attempt, for waiting and open
+   */
+  delayMs: number;
+  error?: string;
+}) => void;
+type BinaryMessageListener = (event: {
+  topic: string;
+  payload: ArrayBuffer;
 }) => void;
 
 export interface MqttClient {
   close: () => Promise<void>;
   connect: () => Promise<void>;
   disconnect: () => Promise<void>;
-  subscribe: (topic: string, qos?: number) => Promise<void>;
+  subscribe: (
+    topic: string,
+    qos?: number,
+    subscribeOptions?: SubscribeOptions
+  ) => Promise<void>;
   unsubscribe: (topic: string) => Promise<void>;
+  /**
+   * subscribe all topics with as few SUBSCRIBE packets as subscribeChunkSize allows
+   */
+  subscribeMany: (
+    subscriptions: SubscribeRequest[]
+  ) => Promise<SubscribeResult[]>;
+  unsubscribeMany: (topics: string[]) => Promise<UnsubscribeResult[]>;
   publish: (
     topic: string,
     base64Body: string,
     qos?: number,
     retained?: boolean
   ) => Promise<void>;
+  publishBinary: (
+    topic: string,
+    payload: ArrayBuffer,
+    qos?: number,
+    retained?: boolean
+  ) => Promise<void>;
+  /**
+   * publish all messages in one native call, resolves with one result per message in order
+   */
+  publishMany: (messages: PublishRequest[]) => Promise<PublishResult[]>;
+  /**
+   * publish a request and resolve with its reply, correlated and timed out natively, Android only
+   */
+  request: (
+    topic: string,
+    base64Body: string,
+    requestOptions: RequestOptions
+  ) => Promise<Message>;
+  getInboundStats: () => Promise<InboundStats>;
+  /**
+   * counters and latency histograms of the native client, Android only
+   */
+  getStats: () => Promise<ClientStats>;
+  /**
+   * messages held by offlineBuffer
+   */
+  getBufferedMessageCount: () => Promise<number>;
+  /**
+   * the last message of every cached topic matching the filter, see retainedCacheSize
+   */
+  getSnapshot: (
+    filter: string,
+    snapshotOptions?: Pick<SubscribeOptions, 'payloadFormat'>
+  ) => Promise<SnapshotMessage[]>;
   onConnect: (listener: ConnectListener) => ListenerSubscription;
   onDisconnect: (listener: DisconnectListener) => ListenerSubscription;
-  onMessage: (listener: MessageListener) => ListenerSubscription;
+  onMessage: {
+    (listener: MessageListener): ListenerSubscription;
+    /**
+     * only messages whose topic matches the filter, wildcards + and # are supported
+     */
+    (filter: string, listener: MessageListener): ListenerSubscription;
+  };
+  /**
+   * batched delivery, used instead of onMessage when batchWindow is set
+   */
+  onMessages: (listener: MessagesListener) => ListenerSubscription;
+  onBinaryMessage: (listener: BinaryMessageListener) => ListenerSubscription;
+  /**
+   * only with tlsResumption
+   */
+  onTlsHandshake: (listener: TlsHandshakeListener) => ListenerSubscription;
+  /**
+   * progress of sending the offlineBuffer after a reconnect
+   */
+  onBufferDrain: (listener: BufferDrainListener) => ListenerSubscription;
+  /**
+   * state changes of reconnecting after a lost connection, Android only
+   */
+  onReconnect: (listener: ReconnectListener) => ListenerSubscription;
+}
+
+let nextListenerId = 0;
+
+/**
+ * Fallback for platforms that do not route natively.
+ */
+function topicMatches(filter: string, topic: string): boolean {
+  const filterLevels = filter.split('/');
+  const topicLevels = topic.split('/');
+  if (
+    topic.startsWith('$') &&
+    (filter.startsWith('+') || filter.startsWith('#'))
+  ) {
+    return false;
+  }
+  for (let i = 0; i < filterLevels.length; i++) {
+    const level = filterLevels[i];
+    if (level === '#') {
+      return true;
+    }
+    if (
+      i >= topicLevels.length ||
+      (level !== '+' && level !== topicLevels[i])
+    ) {
+      return false;
+    }
+  }
+  return filterLevels.length === topicLevels.length;
 }
 
 export async function createMqttClient(
   options: MqttOptions
 ): Promise<MqttClient> {
   await MqttV3.createClient(options);
+  const binaryListeners = new Set<BinaryMessageListener>();
+  const filters = new Map<number, string | null>();
+  const messageListeners = new Map<number, MessageListener>();
+  const batchListeners = new Map<number, MessagesListener>();
+  let routeSubscriptions: ListenerSubscription[] | null = null;
+
+  const listenerIdsOf = (message: RoutedMessage): number[] => {
+    if (message.listenerIds != null) {
+      return message.listenerIds;
+    }
+    const ids: number[] = [];
+    filters.forEach((filter, id) => {
+      if (filter == null || topicMatches(filter, message.topic)) {
+        ids.push(id);
+      }
+    });
+    return ids;
+  };
+  const dispatch = (message: RoutedMessage) => {
+    listenerIdsOf(message).forEach((id) => messageListeners.get(id)?.(message));
+  };
+  const dispatchBatch = (messages: RoutedMessage[]) => {
+    const batches = new Map<number, Message[]>();
+    messages.forEach((message) => {
+      listenerIdsOf(message).forEach((id) => {
+        const listener = messageListeners.get(id);
+        if (listener != null) {
+          listener(message);
+        } else if (batchListeners.has(id)) {
+          const batch = batches.get(id);
+          if (batch == null) {
+            batches.set(id, [message]);
+          } else {
+            batch.push(message);
+          }
+        }
+      });
+    });
+    batches.forEach((batch, id) => batchListeners.get(id)?.(batch));
+  };
+  const addRoute = (filter: string | null): number => {
+    if (routeSubscriptions == null) {
+      routeSubscriptions = [
+        mqttV3EventEmitter.addListener(
+          'MqttV3:onMessage:' + options.clientId,
+          dispatch
+        ),
+        mqttV3EventEmitter.addListener(
+          'MqttV3:onMessages:' + options.clientId,
+          dispatchBatch
+        ),
+      ];
+    }
+    const id = nextListenerId++;
+    filters.set(id, filter);
+    if (typeof MqttV3.addMessageRoute === 'function') {
+      MqttV3.addMessageRoute(options.clientId, filter, id);
+    }
+    return id;
+  };
+  const removeRoute = (id: number) => {
+    if (!filters.has(id)) {
+      return;
+    }
+    const filter = filters.get(id);
+    filters.delete(id);
+    messageListeners.delete(id);
+    batchListeners.delete(id);
+    if (typeof MqttV3.removeMessageRoute === 'function') {
+      MqttV3.removeMessageRoute(options.clientId, filter, id);
+    }
+  };
+
   return {
     connect: () => {
       return MqttV3.connect(options);
@@ -157,21 +727,45 @@ export async function createMqttClient(
       mqttV3EventEmitter.removeAllListeners(
         'MqttV3:onDisconnect:' + options.clientId
       );
-      mqttV3EventEmitter.removeAllListeners(
-        'MqttV3:onMessage:' + options.clientId
-      );
+      routeSubscriptions?.forEach((subscription) => subscription.remove());
+      routeSubscriptions = null;
+      filters.clear();
+      messageListeners.clear();
+      batchListeners.clear();
+      if (binaryListeners.size > 0) {
+        binaryListeners.clear();
+        getBinaryBridge().setMessageHandler(options.clientId, null);
+      }
       return MqttV3.close(options.clientId);
     },
-    subscribe: (topic: string, qos?: number) => {
+    subscribe: (
+      topic: string,
+      qos?: number,
+      subscribeOptions?: SubscribeOptions
+    ) => {
       return MqttV3.subscribe({
         clientId: options.clientId,
         topic,
         qos: qos ?? options.qos,
+        payloadFormat: subscribeOptions?.payloadFormat,
+        conflateMs: subscribeOptions?.conflateMs,
       });
     },
     unsubscribe: (topic: string) => {
       return MqttV3.unsubscribe(options.clientId, topic);
     },
+    subscribeMany: (subscriptions: SubscribeRequest[]) => {
+      return MqttV3.subscribeMany(
+        options.clientId,
+        subscriptions.map((subscription) => ({
+          ...subscription,
+          qos: subscription.qos ?? options.qos,
+        }))
+      );
+    },
+    unsubscribeMany: (topics: string[]) => {
+      return MqttV3.unsubscribeMany(options.clientId, topics);
+    },
     publish: (
       topic: string,
       base64Body: string,
@@ -186,6 +780,61 @@ export async function createMqttClient(
         retained,
       });
     },
+    publishBinary: (
+      topic: string,
+      payload: ArrayBuffer,
+      qos?: number,
+      retained?: boolean
+    ) => {
+      return getBinaryBridge().publish(
+        options.clientId,
+        topic,
+        payload,
+        qos ?? options.qos ?? 1,
+        retained ?? false
+      );
+    },
+    publishMany: (messages: PublishRequest[]) => {
+      return MqttV3.publishMany(
+        options.clientId,
+        messages.map((message) => ({
+          ...message,
+          qos: message.qos ?? options.qos,
+        }))
+      );
+    },
+    request: (
+      topic: string,
+      base64Body: string,
+      requestOptions: RequestOptions
+    ) => {
+      return MqttV3.request({
+        clientId: options.clientId,
+        topic,
+        base64Body,
+        ...requestOptions,
+        qos: requestOptions.qos ?? options.qos,
+      });
+    },
+    getInboundStats: () => {
+      return MqttV3.getInboundStats(options.clientId);
+    },
+    getStats: () => {
+      return MqttV3.getStats(options.clientId);
+    },
+    getSnapshot: (
+      filter: string,
+      snapshotOptions?: Pick<SubscribeOptions, 'payloadFormat'>
+    ) => {
+      return MqttV3.getSnapshot(
+        options.clientId,
+        filter,
+        snapshotOptions ?? null
+      );
+    },
+    getBufferedMessageCount: () => {
+      return MqttV3.getBufferedMessageCount(options.clientId);
+    },
     onConnect: (listener: DisconnectListener) => {
       return mqttV3EventEmitter.addListener(
         'MqttV3:onConnect:' + options.clientId,
@@ -198,11 +847,59 @@ export async function createMqttClient(
         listener
       );
     },
-    onMessage: (listener: MessageListener) => {
+    onTlsHandshake: (listener: TlsHandshakeListener) => {
+      return mqttV3EventEmitter.addListener(
+        'MqttV3:onTlsHandshake:' + options.clientId,
+        listener
+      );
+    },
+    onBufferDrain: (listener: BufferDrainListener) => {
+      return mqttV3EventEmitter.addListener(
+        'MqttV3:onBufferDrain:' + options.clientId,
+        listener
+      );
+    },
+    onReconnect: (listener: ReconnectListener) => {
       return mqttV3EventEmitter.addListener(
-        'MqttV3:onMessage:' + options.clientId,
+        'MqttV3:onReconnect:' + options.clientId,
         listener
       );
     },
+    onMessage: (
+      filterOrListener: string | MessageListener,
+      listener?: MessageListener
+    ) => {
+      const filter =
+        typeof filterOrListener === 'string' ? filterOrListener : null;
+      const messageListener =
+        typeof filterOrListener === 'string' ? listener : filterOrListener;
+      if (messageListener == null) {
+        throw new Error('listener is required.');
+      }
+      const id = addRoute(filter);
+      messageListeners.set(id, messageListener);
+      return { remove: () => removeRoute(id) };
+    },
+    onMessages: (listener: MessagesListener) => {
+      const id = addRoute(null);
+      batchListeners.set(id, listener);
+      return { remove: () => removeRoute(id) };
+    },
+    onBinaryMessage: (listener: BinaryMessageListener) => {
+      const bridge = getBinaryBridge();
+      if (binaryListeners.size === 0) {
+        bridge.setMessageHandler(options.clientId, (topic, payload) => {
+          binaryListeners.forEach((l) => l({ topic, payload }));
+        });
+      }
+      binaryListeners.add(listener);
+      return {
+        remove: () => {
+          if (binaryListeners.delete(listener) && binaryListeners.size === 0) {
+            bridge.setMessageHandler(options.clientId, null);
+          }
+        },
+      };
+    },
   };
 }